@@ -0,0 +1,76 @@
+import com.oteldemo.gateway.cache.EvictionPolicy;
+import com.oteldemo.gateway.cache.LruPolicy;
+import com.oteldemo.gateway.cache.WTinyLfuPolicy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Replays a synthetic lookup trace through the gateway cache's eviction
+ * policies and reports their hit ratios. Popular domains are drawn from a
+ * Zipf distribution; a share of the requests are one-off domains, as a
+ * crawler would send.
+ *
+ * Usage: java -cp target/classes bench/CacheHitRatio.java [requests] [domains] [zipf-exponent] [one-off-share]
+ */
+public class CacheHitRatio {
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int domains = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        double exponent = args.length > 2 ? Double.parseDouble(args[2]) : 0.9;
+        double oneOffShare = args.length > 3 ? Double.parseDouble(args[3]) : 0.3;
+
+        String[] trace = trace(requests, domains, exponent, oneOffShare);
+        System.out.printf("%d requests, %d popular domains, zipf s=%.2f, %.0f%% one-off domains%n",
+                          requests, domains, exponent, oneOffShare * 100);
+        System.out.println("| Cache size | LRU     | W-TinyLFU |");
+        System.out.println("|------------|---------|-----------|");
+        for (int capacity : new int[] {1_000, 10_000, 50_000, 150_000}) {
+            System.out.printf("| %,10d | %6.2f%% | %8.2f%% |%n", capacity,
+                              hitRatio(trace, capacity, LruPolicy::new) * 100,
+                              hitRatio(trace, capacity, WTinyLfuPolicy::new) * 100);
+        }
+    }
+
+    private static double hitRatio(String[] trace, int capacity, IntFunction<EvictionPolicy> factory) {
+        EvictionPolicy policy = factory.apply(capacity);
+        Set<String> cached = new HashSet<>(capacity * 2);
+        long hits = 0;
+
+        for (String key : trace) {
+            if (cached.contains(key)) {
+                policy.onAccess(key);
+                hits++;
+            } else {
+                cached.add(key);
+                policy.onInsert(key).forEach(cached::remove);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    private static String[] trace(int requests, int domains, double exponent, double oneOffShare) {
+        double[] cdf = new double[domains];
+        double sum = 0;
+        for (int rank = 0; rank < domains; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = sum;
+        }
+
+        Random random = new Random(42);
+        String[] trace = new String[requests];
+        for (int i = 0; i < requests; i++) {
+            if (random.nextDouble() < oneOffShare) {
+                trace[i] = "crawl-" + i + ".example|eu|A";
+            } else {
+                int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                trace[i] = "domain-" + (rank < 0 ? -rank - 1 : rank) + ".example|eu|A";
+            }
+        }
+        return trace;
+    }
+}
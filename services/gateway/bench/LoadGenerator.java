@@ -0,0 +1,99 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Opens N concurrent lookups against the gateway (unique domains, so neither
+ * the cache nor coalescing kicks in) and reports completions, wall time and the
+ * gateway's peak resident memory while they were in flight.
+ *
+ * Usage: java LoadGenerator.java <gateway-url> <concurrency> <gateway-pid> <stub-stats-url>
+ */
+public class LoadGenerator {
+
+    private static final Pattern PEAK = Pattern.compile("\"peak_in_flight\":\\s*(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        String gatewayUrl = args[0];
+        int concurrency = Integer.parseInt(args[1]);
+        long gatewayPid = Long.parseLong(args[2]);
+        String stubStatsUrl = args[3];
+
+        HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .executor(java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong peakRssKb = new AtomicLong();
+
+        Thread rssSampler = Thread.ofPlatform().daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakRssKb.accumulateAndGet(rssKb(gatewayPid), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(gatewayUrl))
+                .timeout(Duration.ofSeconds(120))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"domain\":\"bench-" + i + ".example\"}"))
+                .build();
+            calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() == 200 && response.body().contains("\"success\"")) {
+                        ok.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        rssSampler.interrupt();
+
+        String stats = client.send(HttpRequest.newBuilder(URI.create(stubStatsUrl)).build(),
+            HttpResponse.BodyHandlers.ofString()).body();
+        Matcher peak = PEAK.matcher(stats);
+        int peakInFlight = peak.find() ? Integer.parseInt(peak.group(1)) : -1;
+
+        double rssGb = peakRssKb.get() / (1024.0 * 1024.0);
+        System.out.printf("requests=%d ok=%d failed=%d elapsed=%.1fs peak_upstream_in_flight=%d "
+                + "peak_rss=%.0fMB concurrent_per_gb=%.0f%n",
+            concurrency, ok.get(), failed.get(), elapsedSeconds, peakInFlight,
+            peakRssKb.get() / 1024.0, peakInFlight / rssGb);
+    }
+
+    private static long rssKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/" + pid + "/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (Exception ignored) {
+            // process gone or not on Linux
+        }
+        return 0;
+    }
+}
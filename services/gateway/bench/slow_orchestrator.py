@@ -0,0 +1,98 @@
+"""
+Minimal stand-in for the orchestrator used by the gateway benchmarks.
+
+Answers POST /api/v1/dns/orchestrate after a fixed delay (simulating the
+Redis fan-out wait) and tracks the peak number of concurrently open requests,
+which is reported by GET /stats.
+"""
+import asyncio
+import json
+import os
+import sys
+
+DELAY_SECONDS = float(os.getenv("DELAY_SECONDS", "2"))
+
+in_flight = 0
+peak_in_flight = 0
+served = 0
+
+
+def lookup_response(request):
+    records = {
+        record_type: {"record_type": record_type, "records": ["192.0.2.1"], "duration_ms": 1, "ttl": 300}
+        for record_type in request.get("record_types", [])
+    }
+    by_location = {
+        location: {"status": "success", "records": records, "error": None, "processing_time_ms": 1}
+        for location in request.get("locations", [])
+    }
+    return {
+        "domain": request.get("domain"),
+        "status": "success",
+        "results": {
+            "by_location": by_location,
+            "summary": {"total_locations": len(by_location), "successful": len(by_location), "failed": 0},
+        },
+        "message": "stub",
+    }
+
+
+async def read_body(reader, headers):
+    if "content-length" in headers:
+        return await reader.readexactly(int(headers["content-length"]))
+    body = b""
+    while True:
+        size = int((await reader.readline()).strip(), 16)
+        if size == 0:
+            await reader.readline()
+            return body
+        body += await reader.readexactly(size)
+        await reader.readline()
+
+
+async def handle(reader, writer):
+    global in_flight, peak_in_flight, served
+    try:
+        while True:
+            request_line = await reader.readline()
+            if not request_line:
+                return
+            method, path, _ = request_line.decode().split(" ", 2)
+
+            headers = {}
+            while True:
+                line = (await reader.readline()).decode().strip()
+                if not line:
+                    break
+                name, value = line.split(":", 1)
+                headers[name.strip().lower()] = value.strip()
+
+            if method == "GET":
+                payload = {"peak_in_flight": peak_in_flight, "served": served}
+            else:
+                request = json.loads(await read_body(reader, headers))
+                in_flight += 1
+                peak_in_flight = max(peak_in_flight, in_flight)
+                await asyncio.sleep(DELAY_SECONDS)
+                in_flight -= 1
+                served += 1
+                payload = lookup_response(request)
+
+            data = json.dumps(payload).encode()
+            writer.write(b"HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                         + f"Content-Length: {len(data)}\r\n\r\n".encode() + data)
+            await writer.drain()
+    except (ConnectionError, asyncio.IncompleteReadError):
+        pass
+    finally:
+        writer.close()
+
+
+async def main(port):
+    server = await asyncio.start_server(handle, "127.0.0.1", port, backlog=4096)
+    async with server:
+        await server.serve_forever()
+
+
+if __name__ == "__main__":
+    asyncio.run(main(int(sys.argv[1]) if len(sys.argv) > 1 else 8001))
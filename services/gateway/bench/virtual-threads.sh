@@ -0,0 +1,59 @@
+#!/usr/bin/env bash
+# Compares the gateway's platform-thread and virtual-thread modes.
+#
+# Starts a slow stub orchestrator, then for each mode boots the gateway
+# (cache and coalescing off, so every request really waits upstream), opens
+# CONCURRENCY lookups at once and reports how many were held in flight
+# concurrently per GB of gateway RSS.
+#
+# Requires JDK 21 and python3. Run from services/gateway after `mvn package`.
+set -euo pipefail
+
+CONCURRENCY=${CONCURRENCY:-2000}
+DELAY_SECONDS=${DELAY_SECONDS:-5}
+HEAP=${HEAP:-512m}
+STUB_PORT=${STUB_PORT:-18001}
+GATEWAY_PORT=${GATEWAY_PORT:-18080}
+JAR=$(ls target/gateway-*.jar | head -n1)
+
+cleanup() {
+    [[ -n "${GATEWAY_PID:-}" ]] && kill "$GATEWAY_PID" 2>/dev/null || true
+    [[ -n "${STUB_PID:-}" ]] && kill "$STUB_PID" 2>/dev/null || true
+}
+trap cleanup EXIT
+
+run_mode() {
+    local virtual=$1
+
+    DELAY_SECONDS=$DELAY_SECONDS python3 bench/slow_orchestrator.py "$STUB_PORT" &
+    STUB_PID=$!
+
+    java -Xmx"$HEAP" -jar "$JAR" \
+        --server.port="$GATEWAY_PORT" \
+        --orchestrator.url="http://127.0.0.1:$STUB_PORT" \
+        --orchestrator.http.max-connections="$CONCURRENCY" \
+        --orchestrator.http.max-connections-per-route="$CONCURRENCY" \
+        --orchestrator.http.connection-request-timeout=120s \
+        --orchestrator.http.response-timeout=120s \
+        --orchestrator.http.read-timeout=120s \
+        --gateway.cache.enabled=false \
+        --gateway.coalescing.enabled=false \
+        --gateway.concurrency-limit.enabled=false \
+        --gateway.circuit-breaker.enabled=false \
+        --spring.threads.virtual.enabled="$virtual" \
+        --logging.level.com.oteldemo.gateway=WARN > /dev/null 2>&1 &
+    GATEWAY_PID=$!
+
+    until curl -sf "http://127.0.0.1:$GATEWAY_PORT/actuator/health" > /dev/null; do sleep 0.5; done
+
+    printf "virtual_threads=%-5s " "$virtual"
+    java bench/LoadGenerator.java "http://127.0.0.1:$GATEWAY_PORT/api/v1/dns/lookup" \
+        "$CONCURRENCY" "$GATEWAY_PID" "http://127.0.0.1:$STUB_PORT/stats"
+
+    kill "$GATEWAY_PID" "$STUB_PID"
+    wait "$GATEWAY_PID" "$STUB_PID" 2>/dev/null || true
+    GATEWAY_PID= STUB_PID=
+}
+
+run_mode false
+run_mode true
@@ -0,0 +1,271 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the lookup cache across restarts: writes it to gateway.cache.snapshot.path
+ * on shutdown and every snapshot interval, and loads it back on startup,
+ * dropping entries that expired in the meantime. Disabled when no path is set.
+ *
+ * File layout (big-endian): magic, version, then segments of up to
+ * {@value #SEGMENT_ENTRIES} entries, each prefixed with its entry count, byte
+ * length and CRC32. An entry is the cell key (u16 length + UTF-8), the expiry
+ * as epoch millis and the record as length-prefixed JSON. Segments are
+ * independent, so the loader maps the file and parses them in parallel; a
+ * corrupt or truncated segment is skipped without losing the rest.
+ */
+@Component
+public class CacheSnapshotter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSnapshotter.class);
+
+    private static final int MAGIC = 0x4C4B5543; // "LKUC"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_ENTRIES = 1024;
+    private static final int SEGMENT_HEADER_BYTES = 12;
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private LookupResultCache lookupResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${gateway.cache.snapshot.path:}")
+    private String snapshotPath;
+
+    @Value("${gateway.cache.snapshot.interval:5m}")
+    private Duration interval;
+
+    private Path path;
+    private ScheduledExecutorService scheduler;
+    private Timer writeTimer;
+    private Timer restoreTimer;
+
+    @PostConstruct
+    void init() {
+        if (!cacheEnabled || snapshotPath.isBlank()) {
+            return;
+        }
+        path = Path.of(snapshotPath);
+
+        writeTimer = Timer.builder("gateway.cache.snapshot.duration").tag("operation", "write")
+            .description("Time to write or restore a lookup cache snapshot").register(meterRegistry);
+        restoreTimer = Timer.builder("gateway.cache.snapshot.duration").tag("operation", "restore")
+            .description("Time to write or restore a lookup cache snapshot").register(meterRegistry);
+
+        restoreTimer.record(this::restore);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeQuietly, interval.toMillis(), interval.toMillis(),
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        writeQuietly();
+    }
+
+    private void writeQuietly() {
+        try {
+            writeTimer.recordCallable(this::write);
+        } catch (Exception e) {
+            logger.warn("Writing lookup cache snapshot to {} failed: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the cache to a temporary file next to the snapshot and move it into
+     * place, so a crash mid-write never leaves a half-written snapshot behind.
+     */
+    synchronized int write() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<String> keys = lookupResultCache.keys();
+        int written = 0;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header);
+
+            // Exported a segment at a time so lookups are not blocked for the whole snapshot
+            for (int from = 0; from < keys.size(); from += SEGMENT_ENTRIES) {
+                List<LookupResultCache.SnapshotEntry> entries =
+                    lookupResultCache.export(keys.subList(from, Math.min(from + SEGMENT_ENTRIES, keys.size())));
+                if (!entries.isEmpty()) {
+                    writeFully(channel, encodeSegment(entries));
+                    written += entries.size();
+                }
+            }
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Wrote {} lookup cache entries to {}", written, path);
+        return written;
+    }
+
+    private ByteBuffer encodeSegment(List<LookupResultCache.SnapshotEntry> entries) throws IOException {
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        List<byte[]> records = new ArrayList<>(entries.size());
+        int length = 0;
+        for (LookupResultCache.SnapshotEntry entry : entries) {
+            byte[] key = entry.key().getBytes(StandardCharsets.UTF_8);
+            byte[] record = objectMapper.writeValueAsBytes(entry.record());
+            keys.add(key);
+            records.add(record);
+            length += 2 + key.length + 8 + 4 + record.length;
+        }
+
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER_BYTES + length);
+        segment.position(SEGMENT_HEADER_BYTES);
+        for (int i = 0; i < entries.size(); i++) {
+            segment.putShort((short) keys.get(i).length).put(keys.get(i))
+                .putLong(entries.get(i).expiresAtMillis())
+                .putInt(records.get(i).length).put(records.get(i));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(segment.array(), SEGMENT_HEADER_BYTES, length);
+        segment.putInt(0, entries.size()).putInt(4, length).putInt(8, (int) crc.getValue());
+        return segment.rewind();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void restore() {
+        if (!Files.isRegularFile(path)) {
+            logger.info("No lookup cache snapshot at {}, starting cold", path);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < 8 || channel.size() > Integer.MAX_VALUE) {
+                logger.warn("Ignoring lookup cache snapshot {} of {} bytes", path, channel.size());
+                return;
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.getInt() != MAGIC || file.getInt() != VERSION) {
+                logger.warn("Ignoring lookup cache snapshot {} with unknown format", path);
+                return;
+            }
+
+            List<ByteBuffer> segments = new ArrayList<>();
+            while (file.remaining() >= SEGMENT_HEADER_BYTES) {
+                int length = file.getInt(file.position() + 4);
+                if (length < 0 || length > file.remaining() - SEGMENT_HEADER_BYTES) {
+                    logger.warn("Lookup cache snapshot {} is truncated, loading what is complete", path);
+                    break;
+                }
+                segments.add(file.slice(file.position(), SEGMENT_HEADER_BYTES + length));
+                file.position(file.position() + SEGMENT_HEADER_BYTES + length);
+            }
+
+            long now = System.currentTimeMillis();
+            AtomicInteger restored = new AtomicInteger();
+            AtomicInteger expired = new AtomicInteger();
+            AtomicInteger corrupt = new AtomicInteger();
+            segments.parallelStream().forEach(segment -> {
+                try {
+                    List<LookupResultCache.SnapshotEntry> entries = decodeSegment(segment);
+                    List<LookupResultCache.SnapshotEntry> live = entries.stream()
+                        .filter(entry -> entry.expiresAtMillis() > now)
+                        .toList();
+                    expired.addAndGet(entries.size() - live.size());
+                    restored.addAndGet(lookupResultCache.restore(live));
+                } catch (IOException | RuntimeException e) {
+                    corrupt.incrementAndGet();
+                    logger.debug("Skipping lookup cache snapshot segment: {}", e.getMessage());
+                }
+            });
+
+            logger.info("Restored {} lookup cache entries from {} ({} expired, {} corrupt segments skipped)",
+                        restored.get(), path, expired.get(), corrupt.get());
+        } catch (IOException e) {
+            logger.warn("Reading lookup cache snapshot {} failed, starting cold: {}", path, e.getMessage());
+        }
+    }
+
+    private List<LookupResultCache.SnapshotEntry> decodeSegment(ByteBuffer segment) throws IOException {
+        int count = segment.getInt();
+        int length = segment.getInt();
+        int checksum = segment.getInt();
+
+        CRC32 crc = new CRC32();
+        crc.update(segment.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("checksum mismatch");
+        }
+
+        List<LookupResultCache.SnapshotEntry> entries = new ArrayList<>(count);
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[Short.toUnsignedInt(segment.getShort())];
+            segment.get(key);
+            long expiresAt = segment.getLong();
+            int recordLength = segment.getInt();
+            if (recordLength > buffer.length) {
+                buffer = new byte[recordLength];
+            }
+            segment.get(buffer, 0, recordLength);
+            Map<String, Object> record = objectMapper.readValue(buffer, 0, recordLength, RECORD_TYPE);
+            entries.add(new LookupResultCache.SnapshotEntry(new String(key, StandardCharsets.UTF_8), expiresAt, record));
+        }
+        if (segment.position() != SEGMENT_HEADER_BYTES + length) {
+            throw new IOException("segment length mismatch");
+        }
+        return entries;
+    }
+}
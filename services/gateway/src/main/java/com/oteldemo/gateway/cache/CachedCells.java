@@ -0,0 +1,233 @@
+package com.oteldemo.gateway.cache;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the cache holds for one request, cell by cell: the cached answers, the
+ * (location, record type) cells that still have to come from upstream, and the
+ * expired cells this caller claimed for refresh.
+ *
+ * {@link #upstreamRequests} turns the missing cells into as few orchestrator
+ * requests as possible (locations needing the same record types share one),
+ * and {@link #merge} assembles the client response from cached and fetched
+ * answers in the orchestrator's response shape.
+ */
+public final class CachedCells {
+
+    public record Cell(String location, String recordType) {
+    }
+
+    private final String domain;
+    private final Map<Cell, Map<String, Object>> cached = new LinkedHashMap<>();
+    private final Set<Cell> stale = new HashSet<>();
+    private final List<Cell> missing = new ArrayList<>();
+    private final List<Cell> claimed = new ArrayList<>();
+
+    CachedCells(String domain) {
+        this.domain = domain;
+    }
+
+    void addCached(Cell cell, Map<String, Object> record, boolean expired) {
+        cached.put(cell, record);
+        if (expired) {
+            stale.add(cell);
+        }
+    }
+
+    void addMissing(Cell cell) {
+        missing.add(cell);
+    }
+
+    void addClaimed(Cell cell) {
+        claimed.add(cell);
+    }
+
+    String domain() {
+        return domain;
+    }
+
+    List<Cell> claimed() {
+        return claimed;
+    }
+
+    boolean hasAny() {
+        return !cached.isEmpty();
+    }
+
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    public boolean isStale() {
+        return !stale.isEmpty();
+    }
+
+    public boolean hasClaimed() {
+        return !claimed.isEmpty();
+    }
+
+    /**
+     * Requests for the missing cells plus the claimed expired ones.
+     */
+    public List<DnsLookupRequest> upstreamRequests(DnsLookupRequest request) {
+        List<Cell> cells = new ArrayList<>(missing);
+        cells.addAll(claimed);
+        return toRequests(request, cells);
+    }
+
+    /**
+     * Requests refreshing only the claimed expired cells.
+     */
+    public List<DnsLookupRequest> refreshRequests(DnsLookupRequest request) {
+        return toRequests(request, claimed);
+    }
+
+    private static List<DnsLookupRequest> toRequests(DnsLookupRequest original, List<Cell> cells) {
+        Map<String, Set<String>> typesByLocation = new LinkedHashMap<>();
+        for (Cell cell : cells) {
+            typesByLocation.computeIfAbsent(cell.location(), location -> new LinkedHashSet<>()).add(cell.recordType());
+        }
+
+        Map<Set<String>, List<String>> locationsByTypes = new LinkedHashMap<>();
+        typesByLocation.forEach((location, types) ->
+            locationsByTypes.computeIfAbsent(types, t -> new ArrayList<>()).add(location));
+
+        List<DnsLookupRequest> requests = new ArrayList<>(locationsByTypes.size());
+        locationsByTypes.forEach((types, locations) -> {
+            DnsLookupRequest request = new DnsLookupRequest();
+            request.setDomain(original.getDomain());
+            request.setLocations(locations);
+            request.setRecordTypes(new ArrayList<>(types));
+            request.setPriority(original.getPriority());
+            request.setDeadlineNanos(original.getDeadlineNanos());
+            requests.add(request);
+        });
+        return requests;
+    }
+
+    /**
+     * Assemble the response for the request from the cached answers and the
+     * responses to {@link #upstreamRequests} (fetched answers win). If any
+     * upstream call failed outright, its error response is returned.
+     */
+    public DnsLookupResponse merge(DnsLookupRequest request, List<DnsLookupResponse> upstreamResponses) {
+        Map<Cell, Map<String, Object>> fetched = new LinkedHashMap<>();
+        Map<String, Object> processingTimes = new LinkedHashMap<>();
+        DnsLookupResponse incomplete = null;
+
+        for (DnsLookupResponse response : upstreamResponses) {
+            if ("error".equals(response.getStatus())) {
+                return response;
+            }
+            if (!"success".equals(response.getStatus()) && incomplete == null) {
+                incomplete = response;
+            }
+            if (response.getResults() == null
+                    || !(response.getResults().get("by_location") instanceof Map<?, ?> byLocation)) {
+                continue;
+            }
+            byLocation.forEach((location, result) -> {
+                recordsOf(result).forEach((type, record) ->
+                    fetched.put(new Cell(String.valueOf(location), type), record));
+                if (result instanceof Map<?, ?> locationResult && locationResult.get("processing_time_ms") != null) {
+                    processingTimes.put(String.valueOf(location), locationResult.get("processing_time_ms"));
+                }
+            });
+        }
+
+        List<String> locations = LookupResultCache.normalizeLocations(request.getLocations());
+        List<String> recordTypes = LookupResultCache.normalizeRecordTypes(request.getRecordTypes());
+
+        Map<String, Object> byLocation = new LinkedHashMap<>();
+        int fromCache = 0;
+        int answered = 0;
+        boolean usedStale = false;
+        int successful = 0;
+
+        for (String location : locations) {
+            Map<String, Object> records = new LinkedHashMap<>();
+            for (String recordType : recordTypes) {
+                Cell cell = new Cell(location, recordType);
+                Map<String, Object> record = fetched.get(cell);
+                if (record == null && cached.containsKey(cell)) {
+                    record = cached.get(cell);
+                    fromCache++;
+                    usedStale |= stale.contains(cell);
+                }
+                if (record != null) {
+                    records.put(recordType, record);
+                    answered++;
+                }
+            }
+            if (records.isEmpty()) {
+                continue;
+            }
+
+            boolean anySucceeded = records.values().stream()
+                .anyMatch(record -> record instanceof Map<?, ?> r && r.get("error") == null);
+            if (anySucceeded) {
+                successful++;
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("status", anySucceeded ? "success" : "failed");
+            entry.put("records", records);
+            entry.put("error", anySucceeded ? null : "All DNS lookups failed");
+            entry.put("processing_time_ms", processingTimes.getOrDefault(location, 0));
+            byLocation.put(location, entry);
+        }
+
+        if (byLocation.isEmpty() && incomplete != null) {
+            return incomplete;
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total_locations", byLocation.size());
+        summary.put("successful", successful);
+        summary.put("failed", byLocation.size() - successful);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("by_location", byLocation);
+        results.put("summary", summary);
+
+        int expected = locations.size() * recordTypes.size();
+        String status;
+        String message;
+        if (answered == expected) {
+            status = "success";
+            message = "Successfully received results from all " + locations.size() + " worker locations"
+                + (fromCache > 0 ? " (" + fromCache + " of " + expected + " answers from gateway cache)" : "");
+        } else {
+            status = "partial";
+            message = "Received " + byLocation.size() + "/" + locations.size() + " results from worker locations";
+        }
+
+        return new DnsLookupResponse(request.getDomain(), status, results, message, usedStale ? Boolean.TRUE : null, null);
+    }
+
+    /**
+     * The records of one location result, keyed by upper-case record type.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Map<String, Object>> recordsOf(Object locationResult) {
+        Map<String, Map<String, Object>> records = new LinkedHashMap<>();
+        if (locationResult instanceof Map<?, ?> result && result.get("records") instanceof Map<?, ?> byType) {
+            byType.forEach((type, record) -> {
+                if (record instanceof Map<?, ?> recordResult) {
+                    records.put(String.valueOf(type).toUpperCase(Locale.ROOT), (Map<String, Object>) recordResult);
+                }
+            });
+        }
+        return records;
+    }
+}
@@ -0,0 +1,28 @@
+package com.oteldemo.gateway.cache;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Decides which keys a size-bounded cache keeps. The cache reports accesses,
+ * insertions and removals; the policy answers with the keys to evict.
+ */
+public interface EvictionPolicy {
+
+    /** A cached key was read or overwritten. */
+    void onAccess(String key);
+
+    /**
+     * A new key was inserted. Returns the keys to evict to stay within capacity.
+     */
+    List<String> onInsert(String key);
+
+    /** A key left the cache for another reason (expiry, memory pressure). */
+    void onRemove(String key);
+
+    /**
+     * The least valuable tracked key that passes the filter, or null if none
+     * does. Keys are checked one at a time, from the least valuable up.
+     */
+    String victim(Predicate<String> evictable);
+}
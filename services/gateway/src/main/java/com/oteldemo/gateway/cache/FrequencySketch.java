@@ -0,0 +1,82 @@
+package com.oteldemo.gateway.cache;
+
+/**
+ * Count-min sketch of how often keys were seen, with 4-bit counters (16 per
+ * long) in four rows. Once the number of recorded accesses reaches ten times
+ * the cache capacity, all counters are halved, so the estimate tracks recent
+ * popularity rather than all-time totals.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0x97CB3127D4A5F5E1L, 0xAB64B9C8F6D6E4A7L, 0xC2B2AE3D27D4EB4FL, 0x9E3779B97F4A7C15L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[][] rows = new long[SEEDS.length][];
+    private final int indexBits;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.indexBits = Integer.numberOfTrailingZeros(width);
+        this.sampleSize = 10 * Math.max(1, capacity);
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = new long[width / 16];
+        }
+    }
+
+    int frequency(String key) {
+        long hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int row = 0; row < rows.length; row++) {
+            frequency = Math.min(frequency, counter(row, indexOf(hash, row)));
+        }
+        return frequency;
+    }
+
+    void increment(String key) {
+        long hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < rows.length; row++) {
+            int index = indexOf(hash, row);
+            if (counter(row, index) < 15) {
+                rows[row][index >>> 4] += 1L << ((index & 15) << 2);
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (long[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (row[i] >>> 1) & RESET_MASK;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int counter(int row, int index) {
+        return (int) ((rows[row][index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+    }
+
+    private int indexOf(long hash, int row) {
+        return (int) ((hash * SEEDS[row]) >>> (64 - indexBits));
+    }
+
+    // MurmurHash3 finalizer, so similar hash codes land on unrelated counters
+    private static long spread(int hashCode) {
+        long h = hashCode;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
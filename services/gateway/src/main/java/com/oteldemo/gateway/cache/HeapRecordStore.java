@@ -0,0 +1,35 @@
+package com.oteldemo.gateway.cache;
+
+import java.util.Map;
+
+/**
+ * Keeps records as the objects they are; the handle is the record.
+ */
+final class HeapRecordStore implements RecordStore {
+
+    @Override
+    public Object put(Map<String, Object> record) {
+        return record;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(Object handle) {
+        return (Map<String, Object>) handle;
+    }
+
+    @Override
+    public void release(Object handle) {
+        // left to the garbage collector
+    }
+
+    @Override
+    public boolean makesRoom(Object handle) {
+        return true;
+    }
+
+    @Override
+    public boolean canMakeRoom() {
+        return true;
+    }
+}
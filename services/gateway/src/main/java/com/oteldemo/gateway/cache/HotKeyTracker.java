@@ -0,0 +1,220 @@
+package com.oteldemo.gateway.cache;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.HotKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the most requested domains in bounded space with the Space-Saving
+ * algorithm: at most gateway.hot-keys.capacity domains are counted, and a new
+ * domain takes over the counter of the least counted one. Any domain requested
+ * more often than 1/capacity of all requests is guaranteed to be tracked.
+ * Counters sit in buckets of equal count kept in count order (the
+ * Stream-Summary structure), so counting a request and finding the least
+ * counted domain are both O(1).
+ *
+ * Counts cover the current window plus the previous one, so rates follow
+ * recent traffic rather than everything since startup.
+ */
+@Component
+public class HotKeyTracker {
+
+    @Value("${gateway.hot-keys.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.hot-keys.capacity:1000}")
+    private int capacity;
+
+    @Value("${gateway.hot-keys.window:60s}")
+    private Duration window;
+
+    // All guarded by "this"
+    private StreamSummary current = new StreamSummary();
+    private StreamSummary previous = new StreamSummary();
+    private long currentStartMillis = System.currentTimeMillis();
+    private long previousMillis;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count a request whose defaults have already been applied.
+     */
+    public synchronized void record(DnsLookupRequest request) {
+        rotateIfDue(System.currentTimeMillis());
+
+        String domain = LookupResultCache.normalizeDomain(request.getDomain());
+        KeyCounter counter = current.counters.get(domain);
+        if (counter == null) {
+            counter = current.counters.size() >= capacity ? current.replaceLowest(domain) : current.add(domain);
+        }
+
+        current.increment(counter);
+        counter.locations.addAll(LookupResultCache.normalizeLocations(request.getLocations()));
+        counter.recordTypes.addAll(LookupResultCache.normalizeRecordTypes(request.getRecordTypes()));
+    }
+
+    /**
+     * The n most requested domains over the current and previous window, busiest first.
+     */
+    public synchronized List<HotKey> top(int n) {
+        long now = System.currentTimeMillis();
+        rotateIfDue(now);
+        double seconds = Math.max(1, now - currentStartMillis + previousMillis) / 1000.0;
+
+        Map<String, KeyCounter> merged = new HashMap<>();
+        for (StreamSummary summary : List.of(previous, current)) {
+            summary.counters.forEach((domain, counter) -> merged.merge(domain, counter.copy(), KeyCounter::add));
+        }
+
+        return merged.values().stream()
+            .sorted(Comparator.comparingLong((KeyCounter c) -> c.count).reversed())
+            .limit(n)
+            .map(c -> new HotKey(c.domain, c.count, c.error, c.count / seconds,
+                                 new ArrayList<>(c.locations), new ArrayList<>(c.recordTypes)))
+            .toList();
+    }
+
+    private void rotateIfDue(long now) {
+        long elapsed = now - currentStartMillis;
+        if (elapsed < window.toMillis()) {
+            return;
+        }
+        previous = current;
+        previousMillis = elapsed;
+        current = new StreamSummary();
+        currentStartMillis = now;
+    }
+
+    private static final class StreamSummary {
+        private final Map<String, KeyCounter> counters = new HashMap<>();
+        // Buckets in ascending count order
+        private Bucket lowest;
+
+        private KeyCounter add(String domain) {
+            KeyCounter counter = new KeyCounter();
+            counter.domain = domain;
+            counters.put(domain, counter);
+            return counter;
+        }
+
+        // The least counted domain's counter goes to the new domain, count and all
+        private KeyCounter replaceLowest(String domain) {
+            KeyCounter counter = lowest.first;
+            counters.remove(counter.domain);
+            counter.domain = domain;
+            counter.error = counter.count;
+            counter.locations.clear();
+            counter.recordTypes.clear();
+            counters.put(domain, counter);
+            return counter;
+        }
+
+        // Move the counter to the bucket for its new count, right after its old one
+        private void increment(KeyCounter counter) {
+            Bucket from = counter.bucket;
+            long count = counter.count + 1;
+            Bucket next = from != null ? from.next : lowest;
+            Bucket to = next;
+            if (next == null || next.count != count) {
+                to = new Bucket(count);
+                to.prev = from;
+                to.next = next;
+                if (next != null) {
+                    next.prev = to;
+                }
+                if (from != null) {
+                    from.next = to;
+                } else {
+                    lowest = to;
+                }
+            }
+
+            if (from != null) {
+                from.unlink(counter);
+                if (from.first == null) {
+                    if (from.prev != null) {
+                        from.prev.next = to;
+                    } else {
+                        lowest = to;
+                    }
+                    to.prev = from.prev;
+                }
+            }
+            counter.count = count;
+            to.link(counter);
+        }
+    }
+
+    private static final class Bucket {
+        private final long count;
+        private Bucket prev;
+        private Bucket next;
+        private KeyCounter first;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+
+        private void link(KeyCounter counter) {
+            counter.bucket = this;
+            counter.prev = null;
+            counter.next = first;
+            if (first != null) {
+                first.prev = counter;
+            }
+            first = counter;
+        }
+
+        private void unlink(KeyCounter counter) {
+            if (counter.prev != null) {
+                counter.prev.next = counter.next;
+            } else {
+                first = counter.next;
+            }
+            if (counter.next != null) {
+                counter.next.prev = counter.prev;
+            }
+            counter.bucket = null;
+            counter.prev = null;
+            counter.next = null;
+        }
+    }
+
+    private static final class KeyCounter {
+        private String domain;
+        private long count;
+        private long error;
+        private final Set<String> locations = new LinkedHashSet<>();
+        private final Set<String> recordTypes = new LinkedHashSet<>();
+        // Position in the stream summary; copies are not in one
+        private Bucket bucket;
+        private KeyCounter prev;
+        private KeyCounter next;
+
+        private KeyCounter copy() {
+            KeyCounter copy = new KeyCounter();
+            return copy.add(this);
+        }
+
+        private KeyCounter add(KeyCounter other) {
+            domain = other.domain;
+            count += other.count;
+            error += other.error;
+            locations.addAll(other.locations);
+            recordTypes.addAll(other.recordTypes);
+            return this;
+        }
+    }
+}
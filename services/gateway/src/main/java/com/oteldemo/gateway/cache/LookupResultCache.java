@@ -0,0 +1,420 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-gateway cache of worker answers, one entry per (domain, location, record
+ * type) cell, so a request can be served partly from cache and partly from
+ * upstream (see {@link CachedCells}).
+ *
+ * Entry lifetime follows the record's DNS TTL reported by the worker, clamped
+ * to the configured floor/ceiling. Only answers without an error are kept.
+ * Size is bounded by an {@link EvictionPolicy}: W-TinyLFU by default, so the
+ * long tail of one-off domains cannot flush out popular ones, or plain LRU
+ * with gateway.cache.eviction=lru.
+ *
+ * The answers live on the heap by default; with gateway.cache.store=off-heap
+ * they are kept serialized in direct memory ({@link OffHeapRecordStore}) and
+ * only the index stays on the heap.
+ *
+ * Expired entries are kept a while longer: for stale-while-revalidate they
+ * are still served while one caller refreshes them, and up to max-stale past
+ * expiry they can stand in for an upstream call that failed.
+ */
+@Component
+public class LookupResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupResultCache.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${gateway.cache.store:heap}")
+    private String storeType;
+
+    @Value("${gateway.cache.off-heap.max-bytes:256MB}")
+    private DataSize offHeapMaxBytes;
+
+    @Value("${gateway.cache.off-heap.slab-size:1MB}")
+    private DataSize offHeapSlabSize;
+
+    @Value("${gateway.cache.eviction:w-tinylfu}")
+    private String evictionType;
+
+    @Value("${gateway.cache.max-entries:150000}")
+    private int maxEntries;
+
+    @Value("${gateway.cache.default-ttl:60s}")
+    private Duration defaultTtl;
+
+    @Value("${gateway.cache.min-ttl:5s}")
+    private Duration minTtl;
+
+    @Value("${gateway.cache.max-ttl:300s}")
+    private Duration maxTtl;
+
+    @Value("${gateway.cache.stale-while-revalidate:10s}")
+    private Duration staleWhileRevalidate;
+
+    @Value("${gateway.cache.max-stale:5m}")
+    private Duration maxStale;
+
+    // Both guarded by "this"
+    private final Map<String, CacheEntry> entries = new HashMap<>(256);
+    private EvictionPolicy policy;
+
+    private Counter hits;
+    private Counter staleHits;
+    private Counter partialHits;
+    private Counter misses;
+    private Counter sizeEvictions;
+    private Counter memoryEvictions;
+    private Counter expiredEvictions;
+
+    private RecordStore store;
+
+    @PostConstruct
+    void init() {
+        store = "off-heap".equals(storeType)
+            ? new OffHeapRecordStore(objectMapper, offHeapMaxBytes.toBytes(),
+                                     (int) offHeapSlabSize.toBytes(), meterRegistry)
+            : new HeapRecordStore();
+        policy = "lru".equals(evictionType) ? new LruPolicy(maxEntries) : new WTinyLfuPolicy(maxEntries);
+        logger.info("Lookup cache keeps answers in {} memory with {} eviction", storeType, evictionType);
+
+        hits = Counter.builder("gateway.cache.requests").tag("result", "hit")
+            .description("Lookup cache requests by result").register(meterRegistry);
+        staleHits = Counter.builder("gateway.cache.requests").tag("result", "stale")
+            .description("Lookup cache requests by result").register(meterRegistry);
+        partialHits = Counter.builder("gateway.cache.requests").tag("result", "partial")
+            .description("Lookup cache requests by result").register(meterRegistry);
+        misses = Counter.builder("gateway.cache.requests").tag("result", "miss")
+            .description("Lookup cache requests by result").register(meterRegistry);
+        sizeEvictions = Counter.builder("gateway.cache.evictions").tag("cause", "size")
+            .description("Lookup cache evictions by cause").register(meterRegistry);
+        memoryEvictions = Counter.builder("gateway.cache.evictions").tag("cause", "memory")
+            .description("Lookup cache evictions by cause").register(meterRegistry);
+        expiredEvictions = Counter.builder("gateway.cache.evictions").tag("cause", "expired")
+            .description("Lookup cache evictions by cause").register(meterRegistry);
+        Gauge.builder("gateway.cache.size", this, LookupResultCache::size)
+            .description("Current number of cached (domain, location, record type) answers")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Build the key for a whole request whose defaults have already been applied
+     * (used to coalesce identical upstream calls). Domains are case-insensitive
+     * and order of locations / record types does not matter.
+     */
+    public static String keyFor(DnsLookupRequest request) {
+        return normalizeDomain(request.getDomain())
+            + "|" + String.join(",", normalizeLocations(request.getLocations()).stream().sorted().toList())
+            + "|" + String.join(",", normalizeRecordTypes(request.getRecordTypes()).stream().sorted().toList());
+    }
+
+    public static String normalizeDomain(String domain) {
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        return normalized.endsWith(".") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    static List<String> normalizeLocations(List<String> locations) {
+        return locations.stream().map(String::trim).distinct().toList();
+    }
+
+    static List<String> normalizeRecordTypes(List<String> recordTypes) {
+        return recordTypes.stream().map(type -> type.trim().toUpperCase(Locale.ROOT)).distinct().toList();
+    }
+
+    /**
+     * Cached answers for the request's cells: fresh ones, and ones expired less
+     * than stale-while-revalidate ago. Expired cells are claimed for refresh by
+     * the first caller that sees them; it must call {@link #refreshFinished}
+     * once done.
+     */
+    public synchronized CachedCells lookup(DnsLookupRequest request) {
+        CachedCells cells = collect(request, staleWhileRevalidate, true);
+
+        if (cells.isComplete()) {
+            (cells.isStale() ? staleHits : hits).increment();
+        } else if (cells.hasAny()) {
+            partialHits.increment();
+        } else {
+            misses.increment();
+        }
+        return cells;
+    }
+
+    /**
+     * Cached answers up to max-stale past expiry, used as a fallback when the
+     * upstream call fails. Does not count as a cache request.
+     */
+    public synchronized CachedCells lookupStale(DnsLookupRequest request) {
+        return collect(request, maxStale, false);
+    }
+
+    /**
+     * Claim for refresh the request's cached cells that expire within the given
+     * time, so they can be refreshed before anyone sees them expire. Cells not
+     * cached, or already being refreshed, are left alone.
+     */
+    public synchronized CachedCells claimExpiring(DnsLookupRequest request, Duration within) {
+        String domain = normalizeDomain(request.getDomain());
+        CachedCells cells = new CachedCells(domain);
+        long now = System.currentTimeMillis();
+
+        for (String location : normalizeLocations(request.getLocations())) {
+            for (String recordType : normalizeRecordTypes(request.getRecordTypes())) {
+                CachedCells.Cell cell = new CachedCells.Cell(location, recordType);
+                CacheEntry entry = entries.get(cellKey(domain, cell));
+                if (entry == null || entry.refreshing) {
+                    continue;
+                }
+                // Past stale-while-revalidate the next lookup fetches it anyway
+                if (entry.isExpired(now + within.toMillis()) && !entry.isDead(now, staleWhileRevalidate)) {
+                    entry.refreshing = true;
+                    cells.addClaimed(cell);
+                }
+            }
+        }
+        return cells;
+    }
+
+    public synchronized void refreshFinished(CachedCells cells) {
+        for (CachedCells.Cell cell : cells.claimed()) {
+            CacheEntry entry = entries.get(cellKey(cells.domain(), cell));
+            if (entry != null) {
+                entry.refreshing = false;
+            }
+        }
+    }
+
+    /**
+     * Store every error-free answer of the response for the request's cells.
+     */
+    public void put(DnsLookupRequest request, DnsLookupResponse response) {
+        if (!(response.getResults() != null
+                && response.getResults().get("by_location") instanceof Map<?, ?> byLocation)) {
+            return;
+        }
+
+        String domain = normalizeDomain(request.getDomain());
+        List<String> recordTypes = normalizeRecordTypes(request.getRecordTypes());
+        long now = System.currentTimeMillis();
+        int stored = 0;
+
+        synchronized (this) {
+            for (String location : normalizeLocations(request.getLocations())) {
+                Map<String, Map<String, Object>> records = CachedCells.recordsOf(byLocation.get(location));
+                for (String recordType : recordTypes) {
+                    Map<String, Object> record = records.get(recordType);
+                    if (record == null || record.get("error") != null) {
+                        continue;
+                    }
+                    Object handle = storeRecord(record);
+                    if (handle == null) {
+                        continue;
+                    }
+                    long expiresAt = now + ttlFor(record).toMillis();
+                    String key = cellKey(domain, new CachedCells.Cell(location, recordType));
+                    CacheEntry replaced = entries.put(key, new CacheEntry(handle, expiresAt));
+                    if (replaced != null) {
+                        store.release(replaced.handle);
+                        policy.onAccess(key);
+                    } else {
+                        evict(policy.onInsert(key));
+                    }
+                    stored++;
+                }
+            }
+        }
+
+        logger.debug("Cached {} answers for {}", stored, domain);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * An entry as written to and read from a snapshot ({@link CacheSnapshotter}).
+     */
+    record SnapshotEntry(String key, long expiresAtMillis, Map<String, Object> record) {
+    }
+
+    synchronized List<String> keys() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * The unexpired entries among the given keys; keys no longer cached are skipped.
+     */
+    synchronized List<SnapshotEntry> export(List<String> keys) {
+        long now = System.currentTimeMillis();
+        List<SnapshotEntry> exported = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                exported.add(new SnapshotEntry(key, entry.expiresAtMillis, store.get(entry.handle)));
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Add entries read from a snapshot, unless the key is already cached.
+     * Returns how many were added.
+     */
+    synchronized int restore(List<SnapshotEntry> restored) {
+        int added = 0;
+        for (SnapshotEntry snapshotEntry : restored) {
+            if (entries.containsKey(snapshotEntry.key())) {
+                continue;
+            }
+            Object handle = storeRecord(snapshotEntry.record());
+            if (handle == null) {
+                continue;
+            }
+            entries.put(snapshotEntry.key(), new CacheEntry(handle, snapshotEntry.expiresAtMillis()));
+            evict(policy.onInsert(snapshotEntry.key()));
+            added++;
+        }
+        return added;
+    }
+
+    private CachedCells collect(DnsLookupRequest request, Duration staleAllowance, boolean claimRefresh) {
+        String domain = normalizeDomain(request.getDomain());
+        CachedCells cells = new CachedCells(domain);
+        long now = System.currentTimeMillis();
+        Duration retention = retention();
+
+        for (String location : normalizeLocations(request.getLocations())) {
+            for (String recordType : normalizeRecordTypes(request.getRecordTypes())) {
+                CachedCells.Cell cell = new CachedCells.Cell(location, recordType);
+                String key = cellKey(domain, cell);
+                CacheEntry entry = entries.get(key);
+
+                if (entry == null) {
+                    cells.addMissing(cell);
+                } else if (!entry.isExpired(now)) {
+                    policy.onAccess(key);
+                    cells.addCached(cell, store.get(entry.handle), false);
+                } else if (entry.isDead(now, retention)) {
+                    entries.remove(key);
+                    policy.onRemove(key);
+                    store.release(entry.handle);
+                    expiredEvictions.increment();
+                    cells.addMissing(cell);
+                } else if (entry.isDead(now, staleAllowance)) {
+                    cells.addMissing(cell);
+                } else {
+                    policy.onAccess(key);
+                    cells.addCached(cell, store.get(entry.handle), true);
+                    if (claimRefresh && !entry.refreshing) {
+                        entry.refreshing = true;
+                        cells.addClaimed(cell);
+                    }
+                }
+            }
+        }
+
+        return cells;
+    }
+
+    // When the store is full, evict the least valuable entries whose space the record can reuse
+    private Object storeRecord(Map<String, Object> record) {
+        Object handle = store.put(record);
+        if (handle != null) {
+            return handle;
+        }
+
+        String victim;
+        // Checked first, so a record no entry can make room for does not walk the whole policy
+        while (store.canMakeRoom()
+                && (victim = policy.victim(key -> store.makesRoom(entries.get(key).handle))) != null) {
+            CacheEntry evicted = entries.remove(victim);
+            policy.onRemove(victim);
+            store.release(evicted.handle);
+            memoryEvictions.increment();
+            handle = store.put(record);
+            if (handle != null) {
+                return handle;
+            }
+        }
+        return null;
+    }
+
+    private void evict(List<String> victims) {
+        for (String victim : victims) {
+            store.release(entries.remove(victim).handle);
+            sizeEvictions.increment();
+        }
+    }
+
+    private static String cellKey(String domain, CachedCells.Cell cell) {
+        return domain + "|" + cell.location() + "|" + cell.recordType();
+    }
+
+    // How long past expiry an entry can still be served in some form
+    private Duration retention() {
+        return staleWhileRevalidate.compareTo(maxStale) > 0 ? staleWhileRevalidate : maxStale;
+    }
+
+    /**
+     * The record's TTL clamped to [min-ttl, max-ttl]. Falls back to default-ttl
+     * when the worker reported none (e.g. an empty answer).
+     */
+    Duration ttlFor(Map<String, Object> record) {
+        Duration ttl = record.get("ttl") instanceof Number seconds && seconds.longValue() > 0
+            ? Duration.ofSeconds(seconds.longValue())
+            : defaultTtl;
+
+        if (ttl.compareTo(minTtl) < 0) {
+            return minTtl;
+        }
+        if (ttl.compareTo(maxTtl) > 0) {
+            return maxTtl;
+        }
+        return ttl;
+    }
+
+    private static final class CacheEntry {
+        private final Object handle;
+        private final long expiresAtMillis;
+        private boolean refreshing;
+
+        private CacheEntry(Object handle, long expiresAtMillis) {
+            this.handle = handle;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        private boolean isDead(long nowMillis, Duration pastExpiry) {
+            return nowMillis >= expiresAtMillis + pastExpiry.toMillis();
+        }
+    }
+}
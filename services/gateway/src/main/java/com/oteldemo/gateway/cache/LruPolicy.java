@@ -0,0 +1,52 @@
+package com.oteldemo.gateway.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Plain least-recently-used eviction.
+ */
+public final class LruPolicy implements EvictionPolicy {
+
+    private final int capacity;
+
+    // Access-ordered map gives us LRU iteration order
+    private final LinkedHashMap<String, Boolean> keys = new LinkedHashMap<>(256, 0.75f, true);
+
+    public LruPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void onAccess(String key) {
+        keys.get(key);
+    }
+
+    @Override
+    public List<String> onInsert(String key) {
+        keys.put(key, Boolean.TRUE);
+        if (keys.size() <= capacity) {
+            return List.of();
+        }
+
+        String eldest = keys.keySet().iterator().next();
+        keys.remove(eldest);
+        return List.of(eldest);
+    }
+
+    @Override
+    public void onRemove(String key) {
+        keys.remove(key);
+    }
+
+    @Override
+    public String victim(Predicate<String> evictable) {
+        for (String key : keys.keySet()) {
+            if (evictable.test(key)) {
+                return key;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.oteldemo.gateway.cache;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers domains that do not exist (every location answered NXDOMAIN), so
+ * repeated lookups are answered without a fan-out. Other failures, such as dig
+ * timeouts, are transient and not remembered.
+ *
+ * Names are kept in two Bloom filter generations: new names go to the current
+ * one, and both are checked. The older generation is dropped every ttl/2 (or
+ * earlier once the current one has taken expected-insertions names), so a
+ * name is remembered for between ttl/2 and ttl. A million names at the default
+ * 0.1% false-positive rate take about 1.8 MB per generation. A false positive
+ * answers a good domain as failed until its generation rotates out.
+ */
+@Component
+public class NegativeLookupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(NegativeLookupCache.class);
+
+    private static final String NXDOMAIN = "NXDOMAIN";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.negative-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.negative-cache.ttl:60s}")
+    private Duration ttl;
+
+    @Value("${gateway.negative-cache.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${gateway.negative-cache.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    private Counter hits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        clear();
+
+        hits = Counter.builder("gateway.negative_cache.requests").tag("result", "hit")
+            .description("Negative cache requests by result").register(meterRegistry);
+        misses = Counter.builder("gateway.negative_cache.requests").tag("result", "miss")
+            .description("Negative cache requests by result").register(meterRegistry);
+        Gauge.builder("gateway.negative_cache.size", this, NegativeLookupCache::size)
+            .description("Domains recorded in the negative cache (approximate)").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean mightBeNegative(String domain) {
+        rotateIfDue();
+        String name = LookupResultCache.normalizeDomain(domain);
+        boolean hit = current.filter.mightContain(name) || previous.filter.mightContain(name);
+        (hit ? hits : misses).increment();
+        return hit;
+    }
+
+    public void record(String domain) {
+        rotateIfDue();
+        current.filter.add(LookupResultCache.normalizeDomain(domain));
+        logger.info("Recorded {} in negative cache", domain);
+    }
+
+    public synchronized void clear() {
+        current = newGeneration();
+        previous = newGeneration();
+    }
+
+    public long size() {
+        return current.filter.insertions() + previous.filter.insertions();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", size());
+        stats.put("bytes", current.filter.sizeInBytes() + previous.filter.sizeInBytes());
+        stats.put("ttl_seconds", ttl.toSeconds());
+        stats.put("false_positive_rate", falsePositiveRate);
+        return stats;
+    }
+
+    /**
+     * True when all workers answered, none of them succeeded and each of them
+     * got NXDOMAIN. Since that holds for every record type, the domain alone
+     * is enough of a key.
+     */
+    public static boolean isNonExistent(DnsLookupResponse response) {
+        if (!"success".equals(response.getStatus()) || response.getResults() == null
+                || !(response.getResults().get("by_location") instanceof Map<?, ?> byLocation)
+                || byLocation.isEmpty()) {
+            return false;
+        }
+        return byLocation.values().stream().allMatch(location ->
+            location instanceof Map<?, ?> locationResult
+                && !"success".equals(locationResult.get("status"))
+                && answeredNxdomain(locationResult.get("records")));
+    }
+
+    // Records are keyed by record type, each carrying the rcode dig reported
+    private static boolean answeredNxdomain(Object records) {
+        return records instanceof Map<?, ?> byType && byType.values().stream().anyMatch(record ->
+            record instanceof Map<?, ?> lookup && NXDOMAIN.equals(lookup.get("rcode")));
+    }
+
+    /**
+     * The response for a negative cache hit, shaped like an all-failed
+     * orchestrator response.
+     */
+    public static DnsLookupResponse negativeResponse(DnsLookupRequest request) {
+        Map<String, Object> byLocation = new LinkedHashMap<>();
+        for (String location : request.getLocations()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("status", "failed");
+            entry.put("records", Map.of());
+            entry.put("error", NXDOMAIN);
+            entry.put("processing_time_ms", 0);
+            byLocation.put(location, entry);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total_locations", byLocation.size());
+        summary.put("successful", 0);
+        summary.put("failed", byLocation.size());
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("by_location", byLocation);
+        results.put("summary", summary);
+
+        return new DnsLookupResponse(request.getDomain(), "success", results,
+            "All worker locations recently answered NXDOMAIN for this domain (negative cache)");
+    }
+
+    private void rotateIfDue() {
+        Generation generation = current;
+        if (System.currentTimeMillis() - generation.createdAtMillis < ttl.toMillis() / 2
+                && generation.filter.insertions() < expectedInsertions) {
+            return;
+        }
+
+        synchronized (this) {
+            if (current == generation) {
+                previous = current;
+                current = newGeneration();
+            }
+        }
+    }
+
+    private Generation newGeneration() {
+        return new Generation(new BloomFilter(expectedInsertions, falsePositiveRate), System.currentTimeMillis());
+    }
+
+    private record Generation(BloomFilter filter, long createdAtMillis) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps records serialized in direct memory, outside the garbage-collected heap.
+ *
+ * Memory is reserved in fixed-size slabs up to max-bytes. Each slab is cut into
+ * chunks of one size class (classes grow by 25% from 128 bytes), and a record
+ * takes the smallest chunk it fits in, memcached style. Once a slab is handed
+ * to a size class it stays there, so when memory is full a record can only
+ * replace one of its own class. Records larger than a slab are never stored.
+ */
+final class OffHeapRecordStore implements RecordStore {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private static final int SMALLEST_CHUNK = 128;
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private final ObjectMapper objectMapper;
+    private final int slabSize;
+    private final int maxSlabs;
+    private final int[] chunkSizes;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    // A stack of free chunk addresses per size class, in use up to freeCounts
+    private final long[][] freeChunks;
+    private final int[] freeCounts;
+    // Records stored per size class
+    private final int[] liveCounts;
+
+    private long usedChunkBytes;
+    private long payloadBytes;
+    private int rejectedSizeClass = -1;
+
+    private record Slot(int slab, int offset, int sizeClass, int length) {
+    }
+
+    OffHeapRecordStore(ObjectMapper objectMapper, long maxBytes, int slabSize, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, maxBytes / slabSize);
+
+        List<Integer> sizes = new ArrayList<>();
+        for (double size = SMALLEST_CHUNK; size < slabSize; size *= GROWTH_FACTOR) {
+            sizes.add((int) Math.ceil(size / 8) * 8);
+        }
+        sizes.add(slabSize);
+        this.chunkSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        this.freeChunks = new long[chunkSizes.length][0];
+        this.freeCounts = new int[chunkSizes.length];
+        this.liveCounts = new int[chunkSizes.length];
+
+        Gauge.builder("gateway.cache.offheap.bytes", this, store -> (double) store.slabs.size() * store.slabSize)
+            .tag("state", "reserved").description("Off-heap cache memory by state")
+            .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("gateway.cache.offheap.bytes", this, store -> store.usedChunkBytes)
+            .tag("state", "used").description("Off-heap cache memory by state")
+            .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("gateway.cache.offheap.bytes", this, store -> store.payloadBytes)
+            .tag("state", "payload").description("Off-heap cache memory by state")
+            .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("gateway.cache.offheap.max", this, store -> (double) store.maxSlabs * store.slabSize)
+            .description("Off-heap cache memory limit").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("gateway.cache.offheap.fragmentation", this, OffHeapRecordStore::fragmentation)
+            .description("Share of reserved off-heap memory not holding record bytes (chunk slack and free chunks)")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Object put(Map<String, Object> record) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int sizeClass = sizeClassFor(bytes.length);
+        if (sizeClass < 0) {
+            rejectedSizeClass = -1;
+            return null;
+        }
+
+        long chunk = allocate(sizeClass);
+        if (chunk < 0) {
+            rejectedSizeClass = sizeClass;
+            return null;
+        }
+
+        Slot slot = new Slot((int) (chunk >>> 32), (int) chunk, sizeClass, bytes.length);
+        slabs.get(slot.slab).put(slot.offset, bytes);
+        liveCounts[sizeClass]++;
+        usedChunkBytes += chunkSizes[sizeClass];
+        payloadBytes += bytes.length;
+        return slot;
+    }
+
+    @Override
+    public Map<String, Object> get(Object handle) {
+        Slot slot = (Slot) handle;
+        byte[] bytes = new byte[slot.length];
+        slabs.get(slot.slab).get(slot.offset, bytes);
+        try {
+            return objectMapper.readValue(bytes, MAP_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void release(Object handle) {
+        Slot slot = (Slot) handle;
+        free(slot.sizeClass, ((long) slot.slab << 32) | slot.offset);
+        liveCounts[slot.sizeClass]--;
+        usedChunkBytes -= chunkSizes[slot.sizeClass];
+        payloadBytes -= slot.length;
+    }
+
+    @Override
+    public boolean makesRoom(Object handle) {
+        return ((Slot) handle).sizeClass == rejectedSizeClass;
+    }
+
+    @Override
+    public boolean canMakeRoom() {
+        // Too large for a slab, or its class holds no slab to reuse
+        return rejectedSizeClass >= 0 && liveCounts[rejectedSizeClass] > 0;
+    }
+
+    double fragmentation() {
+        long reserved = (long) slabs.size() * slabSize;
+        return reserved == 0 ? 0 : 1 - (double) payloadBytes / reserved;
+    }
+
+    private int sizeClassFor(int length) {
+        for (int i = 0; i < chunkSizes.length; i++) {
+            if (length <= chunkSizes[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Chunk address is (slab index << 32 | offset); -1 if memory is full
+    private long allocate(int sizeClass) {
+        if (freeCounts[sizeClass] == 0 && slabs.size() < maxSlabs) {
+            int slab = slabs.size();
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            int chunkSize = chunkSizes[sizeClass];
+            // Pushed from the end, so the slab is filled front to back
+            for (int offset = (slabSize / chunkSize - 1) * chunkSize; offset >= 0; offset -= chunkSize) {
+                free(sizeClass, ((long) slab << 32) | offset);
+            }
+        }
+        return freeCounts[sizeClass] == 0 ? -1 : freeChunks[sizeClass][--freeCounts[sizeClass]];
+    }
+
+    private void free(int sizeClass, long chunk) {
+        long[] free = freeChunks[sizeClass];
+        if (freeCounts[sizeClass] == free.length) {
+            free = Arrays.copyOf(free, Math.max(16, free.length * 2));
+            freeChunks[sizeClass] = free;
+        }
+        free[freeCounts[sizeClass]++] = chunk;
+    }
+}
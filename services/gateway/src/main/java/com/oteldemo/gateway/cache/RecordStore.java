@@ -0,0 +1,33 @@
+package com.oteldemo.gateway.cache;
+
+import java.util.Map;
+
+/**
+ * Where {@link LookupResultCache} keeps the cached answers themselves; the
+ * index (keys, expiry, LRU order) always stays on the heap. Callers hold the
+ * cache lock, so implementations need no synchronization of their own.
+ */
+interface RecordStore {
+
+    /**
+     * Store a record and return the handle to read it back with, or null if
+     * there is no room for it.
+     */
+    Object put(Map<String, Object> record);
+
+    Map<String, Object> get(Object handle);
+
+    void release(Object handle);
+
+    /**
+     * Whether releasing this handle frees space the last rejected {@link #put}
+     * could have used.
+     */
+    boolean makesRoom(Object handle);
+
+    /**
+     * Whether any stored handle {@link #makesRoom}; false when the last
+     * rejected record could never fit, so there is no point looking for one.
+     */
+    boolean canMakeRoom();
+}
@@ -0,0 +1,101 @@
+package com.oteldemo.gateway.cache;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * W-TinyLFU eviction: new keys enter a small LRU window (1% of capacity).
+ * Keys leaving the window compete with the main cache's next victim, and the
+ * one seen more often according to a {@link FrequencySketch} stays. A key
+ * requested once, such as a crawler's one-off domain, cannot push out a key
+ * requested many times.
+ *
+ * The main cache is a segmented LRU: admitted keys start in probation (20%)
+ * and move to the protected segment (80%) when read again.
+ */
+public final class WTinyLfuPolicy implements EvictionPolicy {
+
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final FrequencySketch sketch;
+
+    // Access-ordered maps give us LRU iteration order for each segment
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> protectedKeys = new LinkedHashMap<>(256, 0.75f, true);
+
+    public WTinyLfuPolicy(int capacity) {
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.mainCapacity = Math.max(1, capacity - windowCapacity);
+        this.protectedCapacity = (int) (mainCapacity * 0.8);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public void onAccess(String key) {
+        sketch.increment(key);
+
+        if (window.get(key) != null || protectedKeys.get(key) != null) {
+            return;
+        }
+        if (probation.remove(key) != null) {
+            protectedKeys.put(key, Boolean.TRUE);
+            if (protectedKeys.size() > protectedCapacity) {
+                // Demote the protected segment's LRU key back to probation
+                String demoted = eldest(protectedKeys);
+                protectedKeys.remove(demoted);
+                probation.put(demoted, Boolean.TRUE);
+            }
+        }
+    }
+
+    @Override
+    public List<String> onInsert(String key) {
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+        if (window.size() <= windowCapacity) {
+            return List.of();
+        }
+
+        String candidate = eldest(window);
+        window.remove(candidate);
+        if (probation.size() + protectedKeys.size() < mainCapacity) {
+            probation.put(candidate, Boolean.TRUE);
+            return List.of();
+        }
+
+        LinkedHashMap<String, Boolean> victimSegment = probation.isEmpty() ? protectedKeys : probation;
+        String victim = eldest(victimSegment);
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            victimSegment.remove(victim);
+            probation.put(candidate, Boolean.TRUE);
+            return List.of(victim);
+        }
+        return List.of(candidate);
+    }
+
+    @Override
+    public void onRemove(String key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedKeys.remove(key);
+        }
+    }
+
+    @Override
+    public String victim(Predicate<String> evictable) {
+        for (LinkedHashMap<String, Boolean> segment : List.of(probation, window, protectedKeys)) {
+            for (String key : segment.keySet()) {
+                if (evictable.test(key)) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String eldest(LinkedHashMap<String, Boolean> segment) {
+        return segment.keySet().iterator().next();
+    }
+}
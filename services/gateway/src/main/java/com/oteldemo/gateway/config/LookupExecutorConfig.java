@@ -0,0 +1,25 @@
+package com.oteldemo.gateway.config;
+
+import io.opentelemetry.context.Context;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executor for lookups the gateway runs off the request thread (batch fan-out).
+ *
+ * Lookups mostly wait on the orchestrator, so each one gets a virtual thread;
+ * callers bound how many they submit at once. Tasks are wrapped so the
+ * submitting request's trace context carries over to the orchestrator call.
+ */
+@Configuration
+public class LookupExecutorConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService lookupExecutor() {
+        return Context.taskWrapping(Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("lookup-", 0).factory()));
+    }
+}
@@ -0,0 +1,123 @@
+package com.oteldemo.gateway.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * HTTP client used to reach the orchestrator: a keep-alive connection pool
+ * with explicit timeouts, so lookups reuse TCP connections instead of
+ * opening a new one per call.
+ */
+@Configuration
+public class OrchestratorClientConfig {
+
+    /**
+     * Response timeout for orchestrator calls made by the current thread, in
+     * place of orchestrator.http.response-timeout when shorter. Set around a
+     * call to stop waiting once the caller's deadline has passed.
+     */
+    public static final ThreadLocal<Duration> CALL_TIMEOUT = new ThreadLocal<>();
+
+    @Value("${orchestrator.http.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${orchestrator.http.max-connections-per-route:500}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${orchestrator.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${orchestrator.http.connection-request-timeout:2s}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${orchestrator.http.read-timeout:15s}")
+    private Duration readTimeout;
+
+    @Value("${orchestrator.http.response-timeout:15s}")
+    private Duration responseTimeout;
+
+    @Value("${orchestrator.http.idle-eviction:30s}")
+    private Duration idleEviction;
+
+    @Bean
+    public PoolingHttpClientConnectionManager orchestratorConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                .build())
+            .build();
+
+        // Pool utilisation, summed over all routes
+        Gauge.builder("gateway.orchestrator.pool.connections", connectionManager,
+                cm -> cm.getTotalStats().getLeased())
+            .tag("state", "leased").description("Orchestrator HTTP pool connections by state")
+            .register(meterRegistry);
+        Gauge.builder("gateway.orchestrator.pool.connections", connectionManager,
+                cm -> cm.getTotalStats().getAvailable())
+            .tag("state", "available").description("Orchestrator HTTP pool connections by state")
+            .register(meterRegistry);
+        Gauge.builder("gateway.orchestrator.pool.pending", connectionManager,
+                cm -> cm.getTotalStats().getPending())
+            .description("Requests waiting for an orchestrator HTTP connection")
+            .register(meterRegistry);
+        Gauge.builder("gateway.orchestrator.pool.max", connectionManager,
+                cm -> cm.getTotalStats().getMax())
+            .description("Maximum orchestrator HTTP pool connections")
+            .register(meterRegistry);
+
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient orchestratorHttpClient(PoolingHttpClientConnectionManager orchestratorConnectionManager) {
+        return HttpClients.custom()
+            .setConnectionManager(orchestratorConnectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                .setResponseTimeout(Timeout.of(responseTimeout))
+                .build())
+            .evictIdleConnections(TimeValue.of(idleEviction))
+            .evictExpiredConnections()
+            .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient orchestratorHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory =
+            new HttpComponentsClientHttpRequestFactory(orchestratorHttpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> {
+            Duration callTimeout = CALL_TIMEOUT.get();
+            if (callTimeout == null || callTimeout.compareTo(responseTimeout) >= 0) {
+                return null;
+            }
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                // A zero timeout would mean none at all
+                .setResponseTimeout(Timeout.ofMilliseconds(Math.max(1, callTimeout.toMillis())))
+                .build());
+            return context;
+        });
+        return new RestTemplate(requestFactory);
+    }
+}
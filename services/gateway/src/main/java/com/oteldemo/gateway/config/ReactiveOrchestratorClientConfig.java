@@ -0,0 +1,68 @@
+package com.oteldemo.gateway.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Beans for the reactive (WebFlux) variant of the gateway, active only when
+ * started with spring.main.web-application-type=reactive.
+ *
+ * Both Tomcat and Netty are on the classpath, so the Netty server factory is
+ * declared explicitly; otherwise Spring Boot would serve WebFlux from Tomcat.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveOrchestratorClientConfig {
+
+    @Value("${orchestrator.http.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${orchestrator.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${orchestrator.http.connection-request-timeout:2s}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${orchestrator.http.response-timeout:15s}")
+    private Duration responseTimeout;
+
+    @Value("${orchestrator.http.idle-eviction:30s}")
+    private Duration idleEviction;
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public WebClient orchestratorWebClient(WebClient.Builder webClientBuilder) {
+        // Waiting lookups queue for a connection instead of failing fast, so a
+        // few hundred pooled connections can serve many thousands of callers
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("orchestrator")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(-1)
+            .pendingAcquireTimeout(connectionRequestTimeout)
+            .maxIdleTime(idleEviction)
+            .metrics(true)
+            .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(responseTimeout);
+
+        // No base URL: calls rotate over orchestrator.urls (see ReactiveOrchestratorService)
+        return webClientBuilder
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.oteldemo.gateway.config;
+
+import io.lettuce.core.RedisClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Redis connection for gateway.backend=redis, where the gateway publishes
+ * tasks to the worker stream itself instead of going through the orchestrator.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.backend", havingValue = "redis")
+public class RedisStreamsConfig {
+
+    @Value("${gateway.redis.url:redis://redis:6379}")
+    private String redisUrl;
+
+    @Bean(destroyMethod = "shutdown")
+    public RedisClient redisClient() {
+        return RedisClient.create(redisUrl);
+    }
+}
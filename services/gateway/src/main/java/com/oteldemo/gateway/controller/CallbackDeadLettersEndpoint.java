@@ -0,0 +1,28 @@
+package com.oteldemo.gateway.controller;
+
+import com.oteldemo.gateway.model.CallbackDelivery;
+import com.oteldemo.gateway.service.CallbackDeliveryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/deadletters: callback deliveries that were given up on. They
+ * hold every caller's callback URL and result, so the endpoint is not exposed
+ * unless added to management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "deadletters")
+public class CallbackDeadLettersEndpoint {
+
+    @Autowired
+    private CallbackDeliveryService callbackDeliveryService;
+
+    @ReadOperation
+    public List<CallbackDelivery> deadLetters() {
+        return callbackDeliveryService.deadLetters();
+    }
+}
@@ -1,30 +1,91 @@
 package com.oteldemo.gateway.controller;
 
+import com.oteldemo.gateway.cache.HotKeyTracker;
+import com.oteldemo.gateway.model.BatchLookupResponse;
 import com.oteldemo.gateway.model.DnsLookupRequest;
 import com.oteldemo.gateway.model.DnsLookupResponse;
-import com.oteldemo.gateway.service.OrchestratorService;
+import com.oteldemo.gateway.model.LookupJob;
+import com.oteldemo.gateway.service.AsyncLookupService;
+import com.oteldemo.gateway.service.BatchLookupService;
+import com.oteldemo.gateway.service.CallbackDeliveryService;
+import com.oteldemo.gateway.service.ConcurrencyLimitExceededException;
+import com.oteldemo.gateway.service.DnsLookupService;
+import com.oteldemo.gateway.service.LookupDefaults;
+import com.oteldemo.gateway.service.LookupDeadlines;
+import com.oteldemo.gateway.service.LookupPriorityResolver;
+import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/api/v1")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class DnsLookupController {
 
     private static final Logger logger = LoggerFactory.getLogger(DnsLookupController.class);
 
+    private static final String TRACER_NAME = "com.oteldemo.gateway";
+
+    @Autowired
+    private DnsLookupService dnsLookupService;
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private LookupPriorityResolver lookupPriorityResolver;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Autowired
+    private BatchLookupService batchLookupService;
+
+    @Autowired
+    private AsyncLookupService asyncLookupService;
+
+    @Autowired
+    private CallbackDeliveryService callbackDeliveryService;
+
     @Autowired
-    private OrchestratorService orchestratorService;
+    private ExecutorService lookupExecutor;
+
+    @Value("${gateway.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    @Value("${gateway.sse.timeout:30s}")
+    private Duration sseTimeout;
 
     @PostMapping("/dns/lookup")
-    public ResponseEntity<DnsLookupResponse> lookupDns(@RequestBody DnsLookupRequest request) {
+    public ResponseEntity<?> lookupDns(
+            @RequestBody DnsLookupRequest request,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = LookupDeadlines.TIMEOUT_HEADER, required = false) String timeout) {
         // Get trace_id from current span - this is our correlation ID
         Span currentSpan = Span.current();
         String traceId = currentSpan.getSpanContext().getTraceId();
@@ -34,35 +95,47 @@ public class DnsLookupController {
 
         try {
             // Validate request
-            if (request.getDomain() == null || request.getDomain().isEmpty()) {
+            if (!LookupDefaults.hasDomain(request)) {
                 return ResponseEntity.badRequest().body(
                     new DnsLookupResponse(null, "error", null, "Domain is required")
                 );
             }
 
-            // Set default locations if not provided
-            if (request.getLocations() == null || request.getLocations().isEmpty()) {
-                request.setLocations(Arrays.asList("us-east-1", "eu-west-1", "asia-south-1"));
-            }
-
-            // Set default record types if not provided
-            if (request.getRecordTypes() == null || request.getRecordTypes().isEmpty()) {
-                request.setRecordTypes(Arrays.asList("A", "AAAA", "MX", "TXT", "NS"));
-            }
+            // Set default locations and record types if not provided
+            LookupDefaults.apply(request);
+            lookupPriorityResolver.resolve(request, priority, apiKey);
 
             // Add span attributes (after defaults are set)
             currentSpan.setAttribute("dns.domain", request.getDomain());
             currentSpan.setAttribute("dns.locations", String.join(",", request.getLocations()));
             currentSpan.setAttribute("dns.record_types", String.join(",", request.getRecordTypes()));
+            currentSpan.setAttribute("dns.priority", request.getPriority().name().toLowerCase(Locale.ROOT));
+
+            if (hotKeyTracker.isEnabled()) {
+                hotKeyTracker.record(request);
+            }
 
-            // Forward to orchestrator (trace context propagated automatically)
-            DnsLookupResponse response = orchestratorService.submitDnsLookup(request);
+            // With a callback URL the caller gets a job right away and the result is POSTed later
+            if (request.getCallbackUrl() != null) {
+                return submitAsync(request, traceId);
+            }
+
+            // Nobody waits on a callback job, so only a synchronous lookup gets a deadline
+            lookupDeadlines.resolve(request, timeout);
+            if (request.getDeadlineNanos() != null) {
+                currentSpan.setAttribute("dns.timeout_ms", request.getTimeoutMs());
+            }
+
+            // Serve from cache or forward to orchestrator (trace context propagated automatically)
+            DnsLookupResponse response = dnsLookupService.lookup(request);
 
             logger.info("DNS lookup processed successfully");
             currentSpan.setAttribute("response.status", response.getStatus());
 
             return ResponseEntity.ok(response);
 
+        } catch (ConcurrencyLimitExceededException e) {
+            return overloaded(request, e);
         } catch (Exception e) {
             logger.error("Error processing DNS lookup: {}", e.getMessage(), e);
             currentSpan.recordException(e);
@@ -75,6 +148,230 @@ public class DnsLookupController {
         }
     }
 
+    // Upstream overloaded: tell the client to back off instead of queueing it
+    private static ResponseEntity<DnsLookupResponse> overloaded(DnsLookupRequest request,
+                                                                ConcurrencyLimitExceededException e) {
+        logger.warn("Rejecting DNS lookup for {}: {}", request.getDomain(), e.getMessage());
+        Span.current().setAttribute("concurrency_limit.rejected", true);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+            .body(new DnsLookupResponse(request.getDomain(), "error", null,
+                                        "Gateway overloaded (" + e.getMessage() + "), retry later"));
+    }
+
+    /**
+     * Asynchronous variant, selected with ?async=true: answers 202 Accepted with a
+     * job id (the request's trace id) to poll at GET /api/v1/dns/jobs/{id}.
+     * If the request carries a callback_url the result is also POSTed there.
+     */
+    @PostMapping(value = "/dns/lookup", params = "async=true")
+    public ResponseEntity<LookupJob> lookupDnsAsync(
+            @RequestBody DnsLookupRequest request,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey) {
+        Span currentSpan = Span.current();
+        String traceId = currentSpan.getSpanContext().getTraceId();
+
+        logger.info("Received async DNS lookup request for domain: {}",
+                    request.getDomain());
+
+        // Validate request
+        if (!LookupDefaults.hasDomain(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Set default locations and record types if not provided
+        LookupDefaults.apply(request);
+        lookupPriorityResolver.resolve(request, priority, apiKey);
+
+        currentSpan.setAttribute("dns.domain", request.getDomain());
+        currentSpan.setAttribute("dns.locations", String.join(",", request.getLocations()));
+        currentSpan.setAttribute("dns.record_types", String.join(",", request.getRecordTypes()));
+        currentSpan.setAttribute("dns.priority", request.getPriority().name().toLowerCase(Locale.ROOT));
+
+        return submitAsync(request, traceId);
+    }
+
+    private ResponseEntity<LookupJob> submitAsync(DnsLookupRequest request, String traceId) {
+        if (request.getCallbackUrl() != null && !callbackDeliveryService.isAllowed(request.getCallbackUrl())) {
+            logger.warn("Rejecting DNS lookup with invalid callback URL: {}", request.getCallbackUrl());
+            return ResponseEntity.badRequest().build();
+        }
+
+        LookupJob job = asyncLookupService.submit(request, traceId);
+        if (job == null) {
+            logger.warn("Job store full, rejecting async DNS lookup for {}", request.getDomain());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+        }
+
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/v1/dns/jobs/" + job.getJobId()))
+            .body(job);
+    }
+
+    @GetMapping("/dns/jobs/{jobId}")
+    public ResponseEntity<LookupJob> getJob(@PathVariable("jobId") String jobId) {
+        LookupJob job = asyncLookupService.get(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @PostMapping("/dns/lookup/batch")
+    public ResponseEntity<BatchLookupResponse> lookupDnsBatch(
+            @RequestBody List<DnsLookupRequest> requests,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = LookupDeadlines.TIMEOUT_HEADER, required = false) String timeout) {
+        Span currentSpan = Span.current();
+
+        logger.info("Received batch DNS lookup request with {} entries", requests.size());
+
+        if (requests.isEmpty() || requests.size() > maxBatchSize) {
+            return ResponseEntity.badRequest().body(
+                new BatchLookupResponse(requests.size(), 0, 0, List.of(),
+                                        "Batch must contain between 1 and " + maxBatchSize + " lookups")
+            );
+        }
+
+        // Null entries are rejected one by one in BatchLookupService
+        requests.stream().filter(Objects::nonNull).forEach(request -> {
+            lookupPriorityResolver.resolveBatchEntry(request, priority, apiKey);
+            lookupDeadlines.resolve(request, timeout);
+        });
+
+        try {
+            return ResponseEntity.ok(batchLookupService.lookupAll(requests));
+
+        } catch (Exception e) {
+            logger.error("Error processing batch DNS lookup: {}", e.getMessage(), e);
+            currentSpan.recordException(e);
+            currentSpan.setStatus(StatusCode.ERROR, "Error processing batch DNS lookup");
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                new BatchLookupResponse(requests.size(), 0, requests.size(), List.of(),
+                                        "Internal server error: " + e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Streaming variant of the batch endpoint, selected with Accept: application/x-ndjson.
+     * Each result is written as its own line as soon as it is available.
+     */
+    @PostMapping(value = "/dns/lookup/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void lookupDnsBatchStream(
+            @RequestBody List<DnsLookupRequest> requests,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = LookupDeadlines.TIMEOUT_HEADER, required = false) String timeout,
+            HttpServletResponse response) throws IOException {
+        Span currentSpan = Span.current();
+
+        logger.info("Received streaming batch DNS lookup request with {} entries", requests.size());
+
+        if (requests.isEmpty() || requests.size() > maxBatchSize) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(),
+                               "Batch must contain between 1 and " + maxBatchSize + " lookups");
+            return;
+        }
+
+        // Null entries are rejected one by one in BatchLookupService
+        requests.stream().filter(Objects::nonNull).forEach(request -> {
+            lookupPriorityResolver.resolveBatchEntry(request, priority, apiKey);
+            lookupDeadlines.resolve(request, timeout);
+        });
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            batchLookupService.streamAll(requests, response.getOutputStream());
+
+        } catch (IOException e) {
+            // Typically the client disconnecting mid-stream
+            logger.warn("Streaming batch DNS lookup aborted: {}", e.getMessage());
+            currentSpan.recordException(e);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            currentSpan.recordException(e);
+            currentSpan.setStatus(StatusCode.ERROR, "Streaming batch DNS lookup interrupted");
+        }
+    }
+
+    /**
+     * Server-Sent Events variant of the lookup: one "location" event per location
+     * as soon as its result arrives, then a "summary" event with the full response.
+     * GET with query parameters so browsers can consume it with EventSource.
+     */
+    @GetMapping(value = "/dns/lookup/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> lookupDnsStream(
+            @RequestParam(value = "domain", required = false) String domain,
+            @RequestParam(value = "locations", required = false) List<String> locations,
+            @RequestParam(value = "record_types", required = false) List<String> recordTypes,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = LookupDeadlines.TIMEOUT_HEADER, required = false) String timeout) {
+        Span currentSpan = Span.current();
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain(domain);
+        request.setLocations(locations);
+        request.setRecordTypes(recordTypes);
+
+        logger.info("Received streaming DNS lookup request for domain: {}", domain);
+
+        // Validate request
+        if (!LookupDefaults.hasDomain(request)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Set default locations and record types if not provided
+        LookupDefaults.apply(request);
+        lookupPriorityResolver.resolve(request, priority, apiKey);
+        lookupDeadlines.resolve(request, timeout);
+
+        currentSpan.setAttribute("dns.domain", request.getDomain());
+        currentSpan.setAttribute("dns.locations", String.join(",", request.getLocations()));
+        currentSpan.setAttribute("dns.record_types", String.join(",", request.getRecordTypes()));
+        currentSpan.setAttribute("dns.priority", request.getPriority().name().toLowerCase(Locale.ROOT));
+
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+
+        // The request span has ended by the time the stream finishes, so the outcome goes on a child span
+        Span streamSpan = GlobalOpenTelemetry.getTracer(TRACER_NAME).spanBuilder("dns.lookup.stream").startSpan();
+        lookupExecutor.execute(Context.current().with(streamSpan).wrap(() -> {
+            try {
+                DnsLookupResponse summary = dnsLookupService.lookupStreaming(request, (location, result) -> {
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("location", location);
+                    event.putAll(result);
+                    try {
+                        emitter.send(SseEmitter.event().name("location").data(event));
+                    } catch (IOException e) {
+                        // Client went away; abort reading the upstream stream
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                emitter.send(SseEmitter.event().name("summary").data(summary));
+                emitter.complete();
+                streamSpan.setAttribute("response.status", summary.getStatus());
+
+            } catch (Exception e) {
+                logger.warn("Streaming DNS lookup aborted: {}", e.getMessage());
+                streamSpan.recordException(e);
+                streamSpan.setStatus(StatusCode.ERROR);
+                emitter.completeWithError(e);
+            } finally {
+                streamSpan.end();
+            }
+        }));
+
+        return ResponseEntity.ok(emitter);
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Gateway is healthy");
@@ -0,0 +1,32 @@
+package com.oteldemo.gateway.controller;
+
+import com.oteldemo.gateway.cache.HotKeyTracker;
+import com.oteldemo.gateway.model.HotKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/hotkeys: the most requested domains with their request rates.
+ * Accepts ?limit= to override gateway.hot-keys.top.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Value("${gateway.hot-keys.top:20}")
+    private int top;
+
+    @ReadOperation
+    public List<HotKey> hotKeys(@Nullable Integer limit) {
+        return hotKeyTracker.top(limit != null && limit > 0 ? limit : top);
+    }
+}
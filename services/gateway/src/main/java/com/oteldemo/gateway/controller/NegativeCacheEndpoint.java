@@ -0,0 +1,39 @@
+package com.oteldemo.gateway.controller;
+
+import com.oteldemo.gateway.cache.NegativeLookupCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * GET /actuator/negativecache shows the negative cache's size and settings,
+ * DELETE clears it. Clearing sends every remembered name back upstream, so
+ * the endpoint is not exposed unless added to
+ * management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "negativecache")
+public class NegativeCacheEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(NegativeCacheEndpoint.class);
+
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return negativeLookupCache.stats();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        logger.info("Clearing negative cache ({} entries)", negativeLookupCache.size());
+        negativeLookupCache.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package com.oteldemo.gateway.controller;
+
+import com.oteldemo.gateway.cache.HotKeyTracker;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.service.ConcurrencyLimitExceededException;
+import com.oteldemo.gateway.service.LookupDefaults;
+import com.oteldemo.gateway.service.LookupDeadlines;
+import com.oteldemo.gateway.service.LookupPriorityResolver;
+import com.oteldemo.gateway.service.ReactiveDnsLookupService;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+
+/**
+ * WebFlux variant of {@link DnsLookupController}, serving the same API from
+ * Netty event-loop threads. Selected with spring.main.web-application-type=reactive.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveDnsLookupController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveDnsLookupController.class);
+
+    @Autowired
+    private ReactiveDnsLookupService reactiveDnsLookupService;
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private LookupPriorityResolver lookupPriorityResolver;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @PostMapping("/dns/lookup")
+    public Mono<ResponseEntity<DnsLookupResponse>> lookupDns(
+            @RequestBody DnsLookupRequest request,
+            @RequestHeader(value = LookupPriorityResolver.PRIORITY_HEADER, required = false) String priority,
+            @RequestHeader(value = LookupPriorityResolver.API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = LookupDeadlines.TIMEOUT_HEADER, required = false) String timeout) {
+        Span currentSpan = Span.current();
+
+        logger.info("Received DNS lookup request for domain: {}",
+                    request.getDomain());
+
+        // Validate request
+        if (!LookupDefaults.hasDomain(request)) {
+            return Mono.just(ResponseEntity.badRequest().body(
+                new DnsLookupResponse(null, "error", null, "Domain is required")
+            ));
+        }
+
+        // Set default locations and record types if not provided
+        LookupDefaults.apply(request);
+        lookupPriorityResolver.resolve(request, priority, apiKey);
+        lookupDeadlines.resolve(request, timeout);
+
+        // Add span attributes (after defaults are set)
+        currentSpan.setAttribute("dns.domain", request.getDomain());
+        currentSpan.setAttribute("dns.locations", String.join(",", request.getLocations()));
+        currentSpan.setAttribute("dns.record_types", String.join(",", request.getRecordTypes()));
+        currentSpan.setAttribute("dns.priority", request.getPriority().name().toLowerCase(Locale.ROOT));
+        if (request.getDeadlineNanos() != null) {
+            currentSpan.setAttribute("dns.timeout_ms", request.getTimeoutMs());
+        }
+
+        if (hotKeyTracker.isEnabled()) {
+            hotKeyTracker.record(request);
+        }
+
+        return reactiveDnsLookupService.lookup(request)
+            .map(response -> {
+                logger.info("DNS lookup processed successfully");
+                currentSpan.setAttribute("response.status", response.getStatus());
+                return ResponseEntity.ok(response);
+            })
+            .onErrorResume(ConcurrencyLimitExceededException.class, e -> Mono.just(overloaded(request, e)))
+            .onErrorResume(e -> {
+                logger.error("Error processing DNS lookup: {}", e.getMessage(), e);
+                currentSpan.recordException(e);
+                currentSpan.setStatus(StatusCode.ERROR, "Error processing DNS lookup");
+
+                return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                    new DnsLookupResponse(request.getDomain(), "error", null,
+                                         "Internal server error: " + e.getMessage())
+                ));
+            });
+    }
+
+    // Upstream overloaded: tell the client to back off instead of queueing it
+    private static ResponseEntity<DnsLookupResponse> overloaded(DnsLookupRequest request,
+                                                                ConcurrencyLimitExceededException e) {
+        logger.warn("Rejecting DNS lookup for {}: {}", request.getDomain(), e.getMessage());
+        Span.current().setAttribute("concurrency_limit.rejected", true);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+            .body(new DnsLookupResponse(request.getDomain(), "error", null,
+                                        "Gateway overloaded (" + e.getMessage() + "), retry later"));
+    }
+
+    @GetMapping("/health")
+    public Mono<ResponseEntity<String>> health() {
+        return Mono.just(ResponseEntity.ok("Gateway is healthy"));
+    }
+}
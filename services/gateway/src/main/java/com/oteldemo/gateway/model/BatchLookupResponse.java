@@ -0,0 +1,30 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLookupResponse {
+
+    @JsonProperty("total")
+    private int total;
+
+    @JsonProperty("succeeded")
+    private int succeeded;
+
+    @JsonProperty("failed")
+    private int failed;
+
+    // One entry per submitted request, in submission order; each carries its own status
+    @JsonProperty("results")
+    private List<DnsLookupResponse> results;
+
+    @JsonProperty("message")
+    private String message;
+}
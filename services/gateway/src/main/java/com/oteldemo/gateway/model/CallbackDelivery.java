@@ -0,0 +1,35 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A lookup result that could not be delivered to its callback URL.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CallbackDelivery {
+
+    @JsonProperty("job_id")
+    private String jobId;
+
+    @JsonProperty("callback_url")
+    private String callbackUrl;
+
+    @JsonProperty("attempts")
+    private int attempts;
+
+    @JsonProperty("last_error")
+    private String lastError;
+
+    @JsonProperty("failed_at")
+    private Instant failedAt;
+
+    @JsonProperty("result")
+    private DnsLookupResponse result;
+}
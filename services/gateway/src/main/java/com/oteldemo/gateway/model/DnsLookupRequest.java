@@ -1,5 +1,6 @@
 package com.oteldemo.gateway.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -20,4 +21,20 @@ public class DnsLookupRequest {
 
     @JsonProperty("record_types")
     private List<String> recordTypes;
+
+    // Optional: answer immediately and POST the result here when done
+    @JsonProperty("callback_url")
+    private String callbackUrl;
+
+    // Optional: admission class under load; the X-API-Key mapping and X-Priority header take precedence
+    @JsonProperty("priority")
+    private LookupPriority priority;
+
+    // Optional: how long the caller will wait, in milliseconds; the X-Request-Timeout header takes precedence
+    @JsonProperty("timeout_ms")
+    private Long timeoutMs;
+
+    // System.nanoTime() by which the answer is due, set from the timeout on arrival; null means no deadline
+    @JsonIgnore
+    private Long deadlineNanos;
 }
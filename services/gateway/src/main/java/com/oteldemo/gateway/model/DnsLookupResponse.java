@@ -1,5 +1,6 @@
 package com.oteldemo.gateway.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -23,4 +24,18 @@ public class DnsLookupResponse {
 
     @JsonProperty("message")
     private String message;
+
+    // Set only when the gateway answered from an expired cache entry
+    @JsonProperty("stale")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stale;
+
+    // Set only on "overloaded" answers: how long to wait before retrying
+    @JsonProperty("retry_after_seconds")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long retryAfterSeconds;
+
+    public DnsLookupResponse(String domain, String status, Map<String, Object> results, String message) {
+        this(domain, status, results, message, null, null);
+    }
 }
@@ -0,0 +1,37 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One of the most requested domains, with the locations and record types it
+ * was requested for.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotKey {
+
+    @JsonProperty("domain")
+    private String domain;
+
+    // Upper bound: space-saving counts may overestimate by at most "error"
+    @JsonProperty("requests")
+    private long requests;
+
+    @JsonProperty("error")
+    private long error;
+
+    @JsonProperty("requests_per_second")
+    private double requestsPerSecond;
+
+    @JsonProperty("locations")
+    private List<String> locations;
+
+    @JsonProperty("record_types")
+    private List<String> recordTypes;
+}
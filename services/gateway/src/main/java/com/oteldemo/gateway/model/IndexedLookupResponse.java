@@ -0,0 +1,23 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a streamed batch: the lookup result plus the position of the
+ * request it answers, since lines are written in completion order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexedLookupResponse {
+
+    @JsonProperty("index")
+    private int index;
+
+    @JsonUnwrapped
+    private DnsLookupResponse response;
+}
@@ -0,0 +1,38 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LookupJob {
+
+    public static final String PENDING = "pending";
+    public static final String COMPLETED = "completed";
+
+    @JsonProperty("job_id")
+    private String jobId;
+
+    @JsonProperty("domain")
+    private String domain;
+
+    // pending | completed
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("submitted_at")
+    private Instant submittedAt;
+
+    @JsonProperty("completed_at")
+    private Instant completedAt;
+
+    @JsonProperty("result")
+    private DnsLookupResponse result;
+}
@@ -0,0 +1,32 @@
+package com.oteldemo.gateway.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Locale;
+
+/**
+ * Admission class of a lookup when the upstream is saturated, highest first:
+ * interactive lookups are admitted before bulk ones, and bulk ones are shed first.
+ */
+public enum LookupPriority {
+
+    @JsonProperty("interactive")
+    INTERACTIVE,
+
+    @JsonProperty("bulk")
+    BULK;
+
+    /**
+     * Case-insensitive parse; null for a missing or unknown value.
+     */
+    public static LookupPriority parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of upstream lookups in flight at a limit that adapts to the
+ * observed upstream round-trip time, TCP Vegas style. The lowest RTT seen
+ * stands for the unloaded upstream; the gap between it and the current RTT
+ * estimates how many calls are queueing upstream. Little queueing raises the
+ * limit, a growing queue or a failed/timed-out call lowers it. The baseline
+ * RTT is re-measured every probe-interval, so it follows a permanently slower
+ * upstream.
+ *
+ * When the limit is reached, callers wait in a queue per {@link LookupPriority}
+ * for at most that class's max-wait, then get
+ * {@link ConcurrencyLimitExceededException}. A freed slot goes to the oldest
+ * waiter of the highest class that can take it, and each class may hold at
+ * most its share of the limit. Bulk lookups therefore wait less, hold fewer
+ * slots and are shed first.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final List<String> REJECTION_REASONS = List.of("queue_full", "timeout", "deadline", "interrupted", "limit");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.concurrency-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.concurrency-limit.initial-limit:100}")
+    private int initialLimit;
+
+    @Value("${gateway.concurrency-limit.min-limit:8}")
+    private int minLimit;
+
+    @Value("${gateway.concurrency-limit.max-limit:500}")
+    private int maxLimit;
+
+    @Value("${gateway.concurrency-limit.smoothing:0.5}")
+    private double smoothing;
+
+    @Value("${gateway.concurrency-limit.probe-interval:30s}")
+    private Duration probeInterval;
+
+    @Value("${gateway.concurrency-limit.retry-after:1s}")
+    private Duration retryAfter;
+
+    @Value("${gateway.priority.default:interactive}")
+    private String defaultPriority;
+
+    @Value("${gateway.priority.max-queue:1000}")
+    private int maxQueue;
+
+    @Value("${gateway.priority.interactive.share:1.0}")
+    private double interactiveShare;
+
+    @Value("${gateway.priority.interactive.max-wait:1s}")
+    private Duration interactiveMaxWait;
+
+    @Value("${gateway.priority.bulk.share:0.5}")
+    private double bulkShare;
+
+    @Value("${gateway.priority.bulk.max-wait:100ms}")
+    private Duration bulkMaxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock; limit is also read without it
+    private volatile double limit;
+    private int inFlight;
+    private final Map<LookupPriority, Integer> inFlightByPriority = new EnumMap<>(LookupPriority.class);
+    private final Map<LookupPriority, ArrayDeque<Object>> queues = new EnumMap<>(LookupPriority.class);
+    private long rttNoLoadNanos;
+    private long lastProbeNanos = System.nanoTime();
+
+    private final Map<LookupPriority, Double> shares = new EnumMap<>(LookupPriority.class);
+    private final Map<LookupPriority, Duration> maxWaits = new EnumMap<>(LookupPriority.class);
+    private LookupPriority fallbackPriority;
+    private final Map<LookupPriority, Map<String, Counter>> rejections = new EnumMap<>(LookupPriority.class);
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+        shares.put(LookupPriority.INTERACTIVE, interactiveShare);
+        shares.put(LookupPriority.BULK, bulkShare);
+        maxWaits.put(LookupPriority.INTERACTIVE, interactiveMaxWait);
+        maxWaits.put(LookupPriority.BULK, bulkMaxWait);
+        LookupPriority parsed = LookupPriority.parse(defaultPriority);
+        fallbackPriority = parsed != null ? parsed : LookupPriority.INTERACTIVE;
+
+        Gauge.builder("gateway.concurrency_limit.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+            .description("Current adaptive limit on upstream lookups in flight").register(meterRegistry);
+        Gauge.builder("gateway.concurrency_limit.rtt_no_load", this, AdaptiveConcurrencyLimiter::rttNoLoadMillis)
+            .description("Lowest recent upstream round-trip time (ms)").register(meterRegistry);
+        for (LookupPriority priority : LookupPriority.values()) {
+            inFlightByPriority.put(priority, 0);
+            queues.put(priority, new ArrayDeque<>());
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("gateway.concurrency_limit.in_flight", this, limiter -> limiter.inFlight(priority))
+                .tag("priority", tag).description("Upstream lookups in flight").register(meterRegistry);
+            Gauge.builder("gateway.concurrency_limit.queued", this, limiter -> limiter.queued(priority))
+                .tag("priority", tag).description("Lookups waiting for an upstream slot").register(meterRegistry);
+            Map<String, Counter> byReason = new HashMap<>();
+            for (String reason : REJECTION_REASONS) {
+                byReason.put(reason, Counter.builder("gateway.concurrency_limit.rejections")
+                    .tag("priority", tag).tag("reason", reason)
+                    .description("Upstream lookups rejected by the concurrency limit").register(meterRegistry));
+            }
+            rejections.put(priority, byReason);
+        }
+    }
+
+    /**
+     * Take a slot for one upstream call, waiting up to the priority's max-wait,
+     * or throw if none frees up. The permit must be completed exactly once. When
+     * disabled every call gets a permit that does nothing.
+     */
+    public Permit acquire(LookupPriority requested) {
+        return acquire(requested, null);
+    }
+
+    /**
+     * As {@link #acquire(LookupPriority)}, but never waiting longer than
+     * maxWait (null for no bound beyond the priority's), e.g. the time left
+     * until the caller's deadline.
+     */
+    public Permit acquire(LookupPriority requested, Duration maxWait) {
+        LookupPriority priority = requested != null ? requested : fallbackPriority;
+        if (!enabled) {
+            return new Permit(priority, -1);
+        }
+
+        lock.lock();
+        try {
+            if (!waiterAhead(priority) && canAdmit(priority)) {
+                return admit(priority);
+            }
+
+            ArrayDeque<Object> queue = queues.get(priority);
+            if (queue.size() >= maxQueue) {
+                throw reject(priority, "queue_full");
+            }
+
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            Duration wait = maxWaits.get(priority);
+            boolean deadlineBound = maxWait != null && maxWait.compareTo(wait) < 0;
+            long remaining = deadlineBound ? maxWait.toNanos() : wait.toNanos();
+            try {
+                while (true) {
+                    if (queue.peekFirst() == ticket && !higherWaiterAdmissible(priority) && canAdmit(priority)) {
+                        queue.removeFirst();
+                        // More slots may be free for the next waiter
+                        changed.signalAll();
+                        return admit(priority);
+                    }
+                    if (remaining <= 0) {
+                        throw reject(priority, deadlineBound ? "deadline" : "timeout");
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(priority, "interrupted");
+            } finally {
+                if (queue.remove(ticket)) {
+                    changed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a slot only if one is free right now (for callers that must not block).
+     */
+    public Permit tryAcquire(LookupPriority requested) {
+        LookupPriority priority = requested != null ? requested : fallbackPriority;
+        if (!enabled) {
+            return new Permit(priority, -1);
+        }
+
+        lock.lock();
+        try {
+            if (!waiterAhead(priority) && canAdmit(priority)) {
+                return admit(priority);
+            }
+            throw reject(priority, "limit");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    // Callers hold the lock for the helpers below
+
+    private boolean canAdmit(LookupPriority priority) {
+        int classLimit = Math.max(1, (int) (shares.get(priority) * limit));
+        return inFlight < (int) limit && inFlightByPriority.get(priority) < classLimit;
+    }
+
+    // Someone of the same or a higher class is already waiting
+    private boolean waiterAhead(LookupPriority priority) {
+        for (LookupPriority other : LookupPriority.values()) {
+            if (other.ordinal() <= priority.ordinal() && !queues.get(other).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A higher class is waiting and could take a slot now
+    private boolean higherWaiterAdmissible(LookupPriority priority) {
+        for (LookupPriority other : LookupPriority.values()) {
+            if (other.ordinal() < priority.ordinal() && !queues.get(other).isEmpty() && canAdmit(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Permit admit(LookupPriority priority) {
+        inFlight++;
+        inFlightByPriority.merge(priority, 1, Integer::sum);
+        return new Permit(priority, inFlight);
+    }
+
+    private ConcurrencyLimitExceededException reject(LookupPriority priority, String reason) {
+        rejections.get(priority).get(reason).increment();
+        return new ConcurrencyLimitExceededException(priority, (int) limit, retryAfter);
+    }
+
+    /**
+     * A slot held by one upstream call.
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final LookupPriority priority;
+        private final int inFlightAtStart;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(LookupPriority priority, int inFlightAtStart) {
+            this.priority = priority;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /** The upstream answered; errors and timeouts count as drops. */
+        public void complete(DnsLookupResponse response) {
+            finish(true, "error".equals(response.getStatus()) || "timeout".equals(response.getStatus()));
+        }
+
+        /** The upstream call failed outright: a sign of overload. */
+        public void dropped() {
+            finish(true, true);
+        }
+
+        /**
+         * The caller's deadline cut the call short: frees the slot without
+         * sampling, as the wait says nothing about the upstream.
+         */
+        public void released() {
+            finish(false, false);
+        }
+
+        private void finish(boolean sampled, boolean dropped) {
+            if (inFlightAtStart < 0 || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            lock.lock();
+            try {
+                inFlight--;
+                inFlightByPriority.merge(priority, -1, Integer::sum);
+                if (sampled) {
+                    sample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void sample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        long now = System.nanoTime();
+        if (!dropped && (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos
+                || now - lastProbeNanos > probeInterval.toNanos())) {
+            rttNoLoadNanos = rttNanos;
+            lastProbeNanos = now;
+            return;
+        }
+
+        double log = Math.max(1, Math.log10(limit));
+        double newLimit;
+        if (dropped) {
+            newLimit = limit - log;
+        } else if (inFlightAtStart * 2 < limit) {
+            // Not using half the limit: RTT says nothing about whether more would fit
+            return;
+        } else {
+            double queueSize = Math.ceil(limit * (1 - (double) rttNoLoadNanos / rttNanos));
+            if (queueSize <= log) {
+                newLimit = limit + 6 * log;
+            } else if (queueSize < 3 * log) {
+                newLimit = limit + log;
+            } else if (queueSize > 6 * log) {
+                newLimit = limit - log;
+            } else {
+                return;
+            }
+        }
+
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        double previous = limit;
+        limit = (1 - smoothing) * limit + smoothing * newLimit;
+        if ((int) previous != (int) limit) {
+            logger.debug("Upstream concurrency limit {} -> {} (rtt {} ms, no-load {} ms)", (int) previous,
+                         (int) limit, TimeUnit.NANOSECONDS.toMillis(rttNanos), rttNoLoadNanos / 1_000_000.0);
+        }
+    }
+
+    private double rttNoLoadMillis() {
+        lock.lock();
+        try {
+            return rttNoLoadNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int inFlight(LookupPriority priority) {
+        lock.lock();
+        try {
+            return inFlightByPriority.get(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queued(LookupPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
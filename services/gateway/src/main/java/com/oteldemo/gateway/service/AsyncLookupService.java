@@ -0,0 +1,77 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupJob;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs lookups in the background and records their outcome in the
+ * {@link LookupJobStore}, so callers can poll instead of holding a connection.
+ * Results of requests carrying a callback URL are handed to the
+ * {@link CallbackDeliveryService} as well.
+ */
+@Service
+public class AsyncLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLookupService.class);
+
+    @Autowired
+    private DnsLookupService dnsLookupService;
+
+    @Autowired
+    private LookupJobStore lookupJobStore;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    @Autowired
+    private CallbackDeliveryService callbackDeliveryService;
+
+    /**
+     * Submit a lookup whose defaults have already been applied.
+     * The trace id is used as job id when valid and not already in use.
+     * Returns null when the job store is full.
+     */
+    public LookupJob submit(DnsLookupRequest request, String traceId) {
+        LookupJob job = lookupJobStore.create(traceId, request.getDomain());
+        if (job == null) {
+            return null;
+        }
+
+        String jobId = job.getJobId();
+        Span.current().setAttribute("job.id", jobId);
+
+        lookupExecutor.execute(() -> {
+            DnsLookupResponse response;
+            try {
+                response = dnsLookupService.lookup(request);
+            } catch (ConcurrencyLimitExceededException e) {
+                logger.warn("Shedding async DNS lookup {}: {}", jobId, e.getMessage());
+                response = e.overloadedResponse(request);
+            } catch (Exception e) {
+                logger.error("Error processing async DNS lookup {}: {}", jobId, e.getMessage(), e);
+                response = new DnsLookupResponse(request.getDomain(), "error", null,
+                                                 "Internal server error: " + e.getMessage());
+            }
+            lookupJobStore.complete(jobId, response);
+            logger.info("Async DNS lookup {} completed with status {}", jobId, response.getStatus());
+
+            if (request.getCallbackUrl() != null) {
+                callbackDeliveryService.enqueue(jobId, request.getCallbackUrl(), response);
+            }
+        });
+
+        return job;
+    }
+
+    public LookupJob get(String jobId) {
+        return lookupJobStore.get(jobId);
+    }
+}
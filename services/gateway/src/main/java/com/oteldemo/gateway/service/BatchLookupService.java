@@ -0,0 +1,169 @@
+package com.oteldemo.gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.BatchLookupResponse;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.IndexedLookupResponse;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fans a list of lookups out to {@link DnsLookupService} with a bounded number
+ * in flight, so one large batch cannot monopolise the orchestrator.
+ *
+ * Results are either collected into one {@link BatchLookupResponse} or
+ * streamed as NDJSON lines as soon as each lookup completes.
+ */
+@Service
+public class BatchLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchLookupService.class);
+
+    @Autowired
+    private DnsLookupService dnsLookupService;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${gateway.batch.max-concurrency:32}")
+    private int maxConcurrency;
+
+    @Value("${gateway.batch.stream.max-in-flight:64}")
+    private int streamMaxInFlight;
+
+    public BatchLookupResponse lookupAll(List<DnsLookupRequest> requests) throws InterruptedException {
+        Span currentSpan = Span.current();
+        currentSpan.setAttribute("batch.size", requests.size());
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<CompletableFuture<DnsLookupResponse>> pending = new ArrayList<>(requests.size());
+
+        for (DnsLookupRequest request : requests) {
+            // Reject invalid entries without failing the whole batch
+            if (request == null || !LookupDefaults.hasDomain(request)) {
+                pending.add(CompletableFuture.completedFuture(
+                    new DnsLookupResponse(request != null ? request.getDomain() : null, "error", null,
+                                          "Domain is required")));
+                continue;
+            }
+            LookupDefaults.apply(request);
+
+            permits.acquire();
+            pending.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lookupOne(request);
+                } finally {
+                    permits.release();
+                }
+            }, lookupExecutor));
+        }
+
+        List<DnsLookupResponse> results = new ArrayList<>(pending.size());
+        int succeeded = 0;
+        for (CompletableFuture<DnsLookupResponse> future : pending) {
+            DnsLookupResponse response = future.join();
+            if ("success".equals(response.getStatus())) {
+                succeeded++;
+            }
+            results.add(response);
+        }
+
+        int failed = results.size() - succeeded;
+        currentSpan.setAttribute("batch.succeeded", succeeded);
+        currentSpan.setAttribute("batch.failed", failed);
+        logger.info("Batch lookup finished: {}/{} succeeded", succeeded, results.size());
+
+        return new BatchLookupResponse(results.size(), succeeded, failed, results,
+                                       "Processed " + results.size() + " lookups");
+    }
+
+    /**
+     * Write one NDJSON line per lookup, in completion order.
+     *
+     * A permit is held from submitting a lookup until its line has been written,
+     * so at most stream.max-in-flight results are running or buffered at once.
+     * A slow reader blocks the writes, which stops new lookups being started.
+     */
+    public void streamAll(List<DnsLookupRequest> requests, OutputStream out)
+            throws IOException, InterruptedException {
+        Span currentSpan = Span.current();
+        currentSpan.setAttribute("batch.size", requests.size());
+        currentSpan.setAttribute("batch.streaming", true);
+
+        Semaphore permits = new Semaphore(streamMaxInFlight);
+        BlockingQueue<IndexedLookupResponse> completed = new LinkedBlockingQueue<>();
+
+        Future<?> producer = lookupExecutor.submit(() -> {
+            for (int i = 0; i < requests.size(); i++) {
+                int index = i;
+                DnsLookupRequest request = requests.get(i);
+                permits.acquire();
+
+                // Reject invalid entries without failing the whole batch
+                if (request == null || !LookupDefaults.hasDomain(request)) {
+                    completed.add(new IndexedLookupResponse(index, new DnsLookupResponse(
+                        request != null ? request.getDomain() : null, "error", null, "Domain is required")));
+                    continue;
+                }
+                LookupDefaults.apply(request);
+
+                lookupExecutor.execute(() -> completed.add(new IndexedLookupResponse(index, lookupOne(request))));
+            }
+            return null;
+        });
+
+        int succeeded = 0;
+        try {
+            for (int written = 0; written < requests.size(); written++) {
+                IndexedLookupResponse line = completed.take();
+                if ("success".equals(line.getResponse().getStatus())) {
+                    succeeded++;
+                }
+
+                out.write(objectMapper.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+                permits.release();
+            }
+        } finally {
+            // Client went away or we are done: stop starting new lookups
+            producer.cancel(true);
+        }
+
+        currentSpan.setAttribute("batch.succeeded", succeeded);
+        currentSpan.setAttribute("batch.failed", requests.size() - succeeded);
+        logger.info("Streamed batch lookup finished: {}/{} succeeded", succeeded, requests.size());
+    }
+
+    private DnsLookupResponse lookupOne(DnsLookupRequest request) {
+        try {
+            return dnsLookupService.lookup(request);
+        } catch (ConcurrencyLimitExceededException e) {
+            logger.warn("Shedding batch lookup for {}: {}", request.getDomain(), e.getMessage());
+            return e.overloadedResponse(request);
+        } catch (Exception e) {
+            logger.error("Error processing batch lookup for {}: {}", request.getDomain(), e.getMessage(), e);
+            return new DnsLookupResponse(request.getDomain(), "error", null,
+                                         "Internal server error: " + e.getMessage());
+        }
+    }
+}
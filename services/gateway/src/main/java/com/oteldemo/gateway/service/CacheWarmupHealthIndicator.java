@@ -0,0 +1,23 @@
+package com.oteldemo.gateway.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports cache warm-up progress under "cacheWarmup" in /actuator/health, and
+ * holds the readiness group down while the warm-up is running.
+ */
+@Component
+public class CacheWarmupHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private CacheWarmupService cacheWarmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheWarmupService.isRunning() ? Health.outOfService() : Health.up();
+        return builder.withDetails(cacheWarmupService.details()).build();
+    }
+}
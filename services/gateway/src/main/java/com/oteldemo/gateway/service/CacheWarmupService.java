@@ -0,0 +1,214 @@
+package com.oteldemo.gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves the domains listed in gateway.warmup.file through the normal lookup
+ * path before the gateway reports ready, so a fresh instance does not send its
+ * first minutes of traffic straight to the orchestrator. Cells already restored
+ * from a cache snapshot are not looked up again.
+ *
+ * The file has one domain per line, or JSON lines shaped like a lookup request
+ * ({"domain": ..., "locations": [...], "record_types": [...]}); blank lines,
+ * lines starting with # and JSON lines without a domain are skipped.
+ *
+ * Spring Boot only switches readiness to ACCEPTING_TRAFFIC once application
+ * runners have finished, so readiness stays down until the warm-up is done or
+ * gateway.warmup.timeout has passed.
+ */
+@Service
+public class CacheWarmupService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    @Autowired
+    private DnsLookupService dnsLookupService;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.warmup.file:}")
+    private String warmupFile;
+
+    @Value("${gateway.warmup.concurrency:8}")
+    private int concurrency;
+
+    @Value("${gateway.warmup.timeout:2m}")
+    private Duration timeout;
+
+    private volatile String state = "disabled";
+    private volatile int total;
+    private volatile long startNanos;
+    private volatile long durationMillis = -1;
+    private final AtomicInteger resolved = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (warmupFile.isBlank()) {
+            return;
+        }
+
+        Counter resolvedCounter = Counter.builder("gateway.warmup.domains").tag("result", "resolved")
+            .description("Warm-up lookups by result").register(meterRegistry);
+        Counter failedCounter = Counter.builder("gateway.warmup.domains").tag("result", "failed")
+            .description("Warm-up lookups by result").register(meterRegistry);
+        Gauge.builder("gateway.warmup.progress", this, CacheWarmupService::progress)
+            .description("Fraction of warm-up domains looked up").register(meterRegistry);
+        TimeGauge.builder("gateway.warmup.duration", this, TimeUnit.MILLISECONDS, CacheWarmupService::elapsedMillis)
+            .description("Time spent warming up the lookup cache").register(meterRegistry);
+
+        long start = System.nanoTime();
+        startNanos = start;
+        List<DnsLookupRequest> requests;
+        try {
+            requests = readRequests(Path.of(warmupFile));
+        } catch (IOException e) {
+            logger.warn("Cannot read warm-up file {}, starting cold: {}", warmupFile, e.getMessage());
+            state = "failed";
+            durationMillis = 0;
+            return;
+        }
+
+        total = requests.size();
+        state = "running";
+        logger.info("Warming up lookup cache with {} domains from {}", total, warmupFile);
+
+        long deadline = start + timeout.toNanos();
+        Semaphore permits = new Semaphore(concurrency);
+        boolean timedOut = false;
+        try {
+            for (DnsLookupRequest request : requests) {
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    timedOut = true;
+                    break;
+                }
+                lookupExecutor.execute(() -> {
+                    try {
+                        DnsLookupResponse response = dnsLookupService.lookup(request);
+                        boolean ok = "success".equals(response.getStatus()) || "partial".equals(response.getStatus());
+                        (ok ? resolved : failed).incrementAndGet();
+                        (ok ? resolvedCounter : failedCounter).increment();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        failedCounter.increment();
+                        logger.debug("Warm-up lookup for {} failed: {}", request.getDomain(), e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // Wait for the lookups still in flight
+            timedOut |= !permits.tryAcquire(concurrency, Math.max(0, deadline - System.nanoTime()),
+                                            TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        }
+
+        durationMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        state = timedOut ? "timed_out" : "completed";
+        logger.info("Lookup cache warm-up {} after {} ms: {} resolved, {} failed of {}",
+                    state, durationMillis, resolved.get(), failed.get(), total);
+    }
+
+    private List<DnsLookupRequest> readRequests(Path path) throws IOException {
+        List<DnsLookupRequest> requests = new ArrayList<>();
+        int skipped = 0;
+        for (String line : Files.readAllLines(path)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            DnsLookupRequest request;
+            if (trimmed.startsWith("{")) {
+                try {
+                    request = objectMapper.readValue(trimmed, DnsLookupRequest.class);
+                } catch (IOException e) {
+                    skipped++;
+                    continue;
+                }
+            } else {
+                request = new DnsLookupRequest();
+                request.setDomain(trimmed);
+            }
+
+            if (!LookupDefaults.hasDomain(request)) {
+                skipped++;
+                continue;
+            }
+            LookupDefaults.apply(request);
+            requests.add(request);
+        }
+
+        if (skipped > 0) {
+            logger.info("Skipped {} warm-up lines without a domain", skipped);
+        }
+        return requests;
+    }
+
+    public boolean isRunning() {
+        return "running".equals(state);
+    }
+
+    /**
+     * Progress for the health endpoint.
+     */
+    public Map<String, Object> details() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("state", state);
+        if (!"disabled".equals(state)) {
+            details.put("file", warmupFile);
+            details.put("total", total);
+            details.put("resolved", resolved.get());
+            details.put("failed", failed.get());
+            details.put("duration_ms", (long) elapsedMillis());
+        }
+        return details;
+    }
+
+    private double progress() {
+        return total == 0 ? 0 : (double) (resolved.get() + failed.get()) / total;
+    }
+
+    // Time so far while running, total time once finished
+    private double elapsedMillis() {
+        if (durationMillis >= 0 || startNanos == 0) {
+            return Math.max(0, durationMillis);
+        }
+        return Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+    }
+}
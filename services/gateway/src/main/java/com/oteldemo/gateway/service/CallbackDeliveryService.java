@@ -0,0 +1,383 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.CallbackDelivery;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * POSTs completed lookups to the callback URL given in the request.
+ *
+ * Deliveries are queued per host and drained by a small fixed worker pool: a
+ * drain waits a short batch window, then sends everything queued for the same
+ * URL in one request ({"deliveries": [{"job_id", "result"}, ...]}). At most one
+ * drain runs per host, so a slow receiver cannot take over all workers. Failed
+ * batches are retried with exponential backoff and jitter; deliveries that run
+ * out of attempts, or that the receiver rejects with a 4xx, end up in a bounded
+ * dead-letter list.
+ *
+ * Callback URLs come from anonymous callers, so hosts resolving to loopback,
+ * link-local, private or otherwise internal addresses are refused unless
+ * listed in gateway.callbacks.allowed-hosts. The check runs when the request
+ * arrives and again when connecting, so a host cannot pass it and then
+ * re-resolve to an internal address.
+ */
+@Service
+public class CallbackDeliveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallbackDeliveryService.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.callbacks.workers:4}")
+    private int workers;
+
+    @Value("${gateway.callbacks.batch-window:50ms}")
+    private Duration batchWindow;
+
+    @Value("${gateway.callbacks.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${gateway.callbacks.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${gateway.callbacks.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${gateway.callbacks.initial-backoff:500ms}")
+    private Duration initialBackoff;
+
+    @Value("${gateway.callbacks.max-backoff:30s}")
+    private Duration maxBackoff;
+
+    @Value("${gateway.callbacks.dead-letter.max-entries:1000}")
+    private int deadLetterMaxEntries;
+
+    @Value("${gateway.callbacks.allowed-hosts:}")
+    private List<String> allowedHosts;
+
+    @Value("${gateway.callbacks.allow-private-addresses:false}")
+    private boolean allowPrivateAddresses;
+
+    @Value("${gateway.callbacks.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${gateway.callbacks.response-timeout:5s}")
+    private Duration responseTimeout;
+
+    private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Deque<CallbackDelivery> deadLetters = new ArrayDeque<>();
+
+    private ScheduledExecutorService scheduler;
+    private CloseableHttpClient httpClient;
+    private RestTemplate callbackRestTemplate;
+
+    private Counter delivered;
+    private Counter retried;
+    private Counter deadLettered;
+
+    @PostConstruct
+    void init() {
+        // Host names compare case-insensitively, and list entries may carry spaces
+        allowedHosts = allowedHosts.stream()
+            .map(host -> host.trim().toLowerCase(Locale.ROOT))
+            .filter(host -> !host.isEmpty())
+            .toList();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "callback-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Separate pool from the orchestrator client: receivers are outside our control
+        httpClient = HttpClients.custom()
+            .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                .setDnsResolver(new SystemDefaultDnsResolver() {
+                    @Override
+                    public InetAddress[] resolve(String host) throws UnknownHostException {
+                        InetAddress[] addresses = super.resolve(host);
+                        if (!isAllowedTarget(host.toLowerCase(Locale.ROOT), addresses)) {
+                            throw new UnknownHostException(host + " resolves to an internal address");
+                        }
+                        return addresses;
+                    }
+                })
+                .setMaxConnTotal(workers)
+                .setMaxConnPerRoute(workers)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(connectTimeout))
+                    .setSocketTimeout(Timeout.of(responseTimeout))
+                    .build())
+                .build())
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setResponseTimeout(Timeout.of(responseTimeout))
+                .build())
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .disableAutomaticRetries()
+            .build();
+        callbackRestTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        delivered = Counter.builder("gateway.callbacks")
+            .tag("outcome", "delivered").description("Callback deliveries by outcome")
+            .register(meterRegistry);
+        retried = Counter.builder("gateway.callbacks")
+            .tag("outcome", "retried").description("Callback deliveries by outcome")
+            .register(meterRegistry);
+        deadLettered = Counter.builder("gateway.callbacks")
+            .tag("outcome", "dead_lettered").description("Callback deliveries by outcome")
+            .register(meterRegistry);
+        Gauge.builder("gateway.callbacks.pending", pending, AtomicInteger::get)
+            .description("Callback deliveries queued or awaiting retry")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        scheduler.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * Accepts absolute http(s) URLs, restricted to gateway.callbacks.allowed-hosts
+     * when that list is set. Hosts not listed there must resolve to public
+     * addresses only.
+     */
+    public boolean isAllowed(String callbackUrl) {
+        try {
+            URI uri = URI.create(callbackUrl);
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                return false;
+            }
+            String host = uri.getHost().toLowerCase(Locale.ROOT);
+            if (!allowedHosts.isEmpty() && !allowedHosts.contains(host)) {
+                return false;
+            }
+            return isAllowedTarget(host, InetAddress.getAllByName(host));
+        } catch (IllegalArgumentException | UnknownHostException e) {
+            return false;
+        }
+    }
+
+    // The host must already be lower-case
+    private boolean isAllowedTarget(String host, InetAddress[] addresses) {
+        if (allowPrivateAddresses || allowedHosts.contains(host)) {
+            return true;
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Loopback, link-local (incl. cloud metadata), private, CGNAT, unique-local, wildcard or multicast. */
+    static boolean isInternal(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            // 100.64.0.0/10 shared address space
+            return (bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64;
+        }
+        // fc00::/7 unique local addresses
+        return address instanceof Inet6Address && (bytes[0] & 0xfe) == 0xfc;
+    }
+
+    public void enqueue(String jobId, String callbackUrl, DnsLookupResponse response) {
+        Delivery delivery = new Delivery(jobId, callbackUrl, response);
+
+        if (pending.incrementAndGet() > maxPending) {
+            logger.warn("Callback queue full, dead-lettering delivery for job {}", jobId);
+            deadLetter(delivery, "Callback queue full");
+            return;
+        }
+
+        queue(delivery);
+    }
+
+    public List<CallbackDelivery> deadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    // Adding under compute() keeps it atomic with the idle-queue removal in drain()
+    private void queue(Delivery delivery) {
+        String host = hostOf(delivery.callbackUrl);
+        HostQueue hostQueue = hostQueues.compute(host, (key, existing) -> {
+            HostQueue queue = existing != null ? existing : new HostQueue();
+            queue.deliveries.add(delivery);
+            return queue;
+        });
+        scheduleDrain(host, hostQueue, batchWindow);
+    }
+
+    private void scheduleDrain(String host, HostQueue hostQueue, Duration delay) {
+        if (hostQueue.draining.compareAndSet(false, true)) {
+            scheduler.schedule(() -> drain(host, hostQueue), delay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain(String host, HostQueue hostQueue) {
+        try {
+            List<Delivery> batch = new ArrayList<>();
+            Delivery next;
+            while (batch.size() < maxBatchSize && (next = hostQueue.deliveries.poll()) != null) {
+                batch.add(next);
+            }
+
+            Map<String, List<Delivery>> byUrl = new LinkedHashMap<>();
+            for (Delivery delivery : batch) {
+                byUrl.computeIfAbsent(delivery.callbackUrl, url -> new ArrayList<>()).add(delivery);
+            }
+            byUrl.forEach(this::send);
+        } catch (RuntimeException e) {
+            logger.error("Callback drain for {} failed: {}", host, e.getMessage(), e);
+        } finally {
+            hostQueue.draining.set(false);
+            // Anything that arrived (or did not fit) during this drain goes out right away
+            if (!hostQueue.deliveries.isEmpty()) {
+                scheduleDrain(host, hostQueue, Duration.ZERO);
+            } else {
+                // Idle hosts are forgotten, so many distinct callback hosts do not pile up
+                hostQueues.computeIfPresent(host, (key, queue) ->
+                    queue == hostQueue && queue.deliveries.isEmpty() && !queue.draining.get() ? null : queue);
+            }
+        }
+    }
+
+    private void send(String callbackUrl, List<Delivery> batch) {
+        List<Map<String, Object>> entries = new ArrayList<>(batch.size());
+        for (Delivery delivery : batch) {
+            entries.add(Map.of("job_id", delivery.jobId, "result", delivery.response));
+        }
+
+        try {
+            callbackRestTemplate.postForEntity(callbackUrl, Map.of("deliveries", entries), Void.class);
+            logger.info("Delivered {} callback(s) to {}", batch.size(), callbackUrl);
+            delivered.increment(batch.size());
+            pending.addAndGet(-batch.size());
+        } catch (HttpStatusCodeException e) {
+            handleFailure(batch, "Callback returned status: " + e.getStatusCode(), isPermanent(e.getStatusCode()));
+        } catch (RuntimeException e) {
+            handleFailure(batch, "Callback failed: " + e.getMessage(), false);
+        }
+    }
+
+    private void handleFailure(List<Delivery> batch, String error, boolean permanent) {
+        for (Delivery delivery : batch) {
+            delivery.attempts++;
+
+            if (permanent || delivery.attempts >= maxAttempts) {
+                logger.warn("Giving up on callback for job {} after {} attempt(s): {}",
+                    delivery.jobId, delivery.attempts, error);
+                deadLetter(delivery, error);
+                continue;
+            }
+
+            Duration backoff = backoffFor(delivery.attempts);
+            logger.info("Retrying callback for job {} in {} ms: {}", delivery.jobId, backoff.toMillis(), error);
+            retried.increment();
+            scheduler.schedule(() -> queue(delivery), backoff.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void deadLetter(Delivery delivery, String error) {
+        pending.decrementAndGet();
+        deadLettered.increment();
+        synchronized (deadLetters) {
+            if (deadLetters.size() >= deadLetterMaxEntries) {
+                deadLetters.removeFirst();
+            }
+            deadLetters.addLast(new CallbackDelivery(delivery.jobId, delivery.callbackUrl,
+                delivery.attempts, error, Instant.now(), delivery.response));
+        }
+    }
+
+    /** Exponential backoff capped at max-backoff, randomised over its upper half. */
+    private Duration backoffFor(int attempts) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempts - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    /** A 4xx other than 408/429 means the receiver will not accept this payload. */
+    private static boolean isPermanent(HttpStatusCode status) {
+        return status.is4xxClientError() && status.value() != 408 && status.value() != 429;
+    }
+
+    private static String hostOf(String callbackUrl) {
+        URI uri = URI.create(callbackUrl);
+        return uri.getHost().toLowerCase(Locale.ROOT) + ":" + uri.getPort();
+    }
+
+    private static final class HostQueue {
+        private final Queue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    private static final class Delivery {
+        private final String jobId;
+        private final String callbackUrl;
+        private final DnsLookupResponse response;
+        private int attempts;
+
+        private Delivery(String jobId, String callbackUrl, DnsLookupResponse response) {
+            this.jobId = jobId;
+            this.callbackUrl = callbackUrl;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Thrown when the adaptive concurrency limit rejects an upstream call; callers
+ * should answer 503 with the suggested Retry-After.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitExceededException(LookupPriority priority, int limit, Duration retryAfter) {
+        super("Upstream concurrency limit of " + limit + " reached for "
+              + priority.name().toLowerCase(Locale.ROOT) + " lookups");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * The answer for a lookup that was shed where no 503 can be sent (batch
+     * entries, async jobs): status "overloaded" with the retry hint.
+     */
+    public DnsLookupResponse overloadedResponse(DnsLookupRequest request) {
+        return new DnsLookupResponse(request.getDomain(), "overloaded", null,
+            "Gateway overloaded (" + getMessage() + "), retry later", null, Math.max(1, retryAfter.toSeconds()));
+    }
+}
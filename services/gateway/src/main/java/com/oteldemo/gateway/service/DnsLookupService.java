@@ -0,0 +1,337 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.cache.CachedCells;
+import com.oteldemo.gateway.cache.LookupResultCache;
+import com.oteldemo.gateway.cache.NegativeLookupCache;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for DNS lookups: answers from the gateway cache when possible,
+ * asks upstream only for the (location, record type) cells the cache is
+ * missing, collapses identical concurrent upstream calls into one and sends
+ * them to the configured {@link LookupBackend}. Answers that just expired are
+ * served stale while refreshed in the background, and older ones stand in for
+ * the upstream when it fails or its circuit breaker is open.
+ */
+@Service
+public class DnsLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DnsLookupService.class);
+
+    @Autowired
+    private LookupBackend lookupBackend;
+
+    @Autowired
+    private LookupResultCache lookupResultCache;
+
+    @Autowired
+    private LookupCoalescer lookupCoalescer;
+
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Autowired
+    private UpstreamCircuitBreaker circuitBreaker;
+
+    // Present only when gateway.batching.enabled=true
+    @Autowired(required = false)
+    private LookupMicroBatcher lookupMicroBatcher;
+
+    @Value("${gateway.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${gateway.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    public DnsLookupResponse lookup(DnsLookupRequest request) {
+        Span currentSpan = Span.current();
+
+        if (!cacheEnabled) {
+            return recordIfNegative(request, fetchCoalesced(request));
+        }
+
+        CachedCells cached = lookupResultCache.lookup(request);
+        currentSpan.setAttribute("cache.hit", cached.isComplete());
+        if (cached.isComplete()) {
+            if (cached.isStale()) {
+                // Just expired: answer from cache and let one caller refresh it in the background
+                logger.info("Serving stale DNS lookup for {} while revalidating", request.getDomain());
+                currentSpan.setAttribute("cache.stale", true);
+                if (cached.hasClaimed()) {
+                    refreshInBackground(request, cached);
+                }
+            } else {
+                logger.info("Serving DNS lookup for {} from cache", request.getDomain());
+            }
+            return cached.merge(request, List.of());
+        }
+
+        if (negativeLookupCache.isEnabled() && negativeLookupCache.mightBeNegative(request.getDomain())) {
+            logger.info("Serving DNS lookup for {} from negative cache", request.getDomain());
+            currentSpan.setAttribute("cache.negative", true);
+            lookupResultCache.refreshFinished(cached);
+            return NegativeLookupCache.negativeResponse(request);
+        }
+
+        List<DnsLookupRequest> upstream = cached.upstreamRequests(request);
+        currentSpan.setAttribute("cache.upstream_requests", upstream.size());
+        try {
+            DnsLookupResponse response = cached.merge(request, fetchAll(upstream));
+            return staleIfFailed(request, recordIfNegative(request, response));
+        } catch (ConcurrencyLimitExceededException e) {
+            // Overloaded upstream: an expired answer beats a rejection
+            CachedCells stale = lookupResultCache.lookupStale(request);
+            if (!stale.isComplete()) {
+                throw e;
+            }
+            logger.warn("Upstream concurrency limit reached, serving stale cache entry for {}", request.getDomain());
+            currentSpan.setAttribute("cache.stale", true);
+            return stale.merge(request, List.of());
+        } finally {
+            lookupResultCache.refreshFinished(cached);
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #lookup}: each location's result is handed to
+     * the listener as soon as it is known. Requests the cache can answer in full
+     * are replayed from it; otherwise the whole request is streamed from
+     * upstream. Streams are not coalesced, since each caller needs its own
+     * per-location events.
+     */
+    public DnsLookupResponse lookupStreaming(DnsLookupRequest request, LocationResultListener listener) {
+        if (cacheEnabled) {
+            CachedCells cached = lookupResultCache.lookup(request);
+            Span.current().setAttribute("cache.hit", cached.isComplete());
+            if (cached.isComplete()) {
+                logger.info("Replaying DNS lookup for {} from cache", request.getDomain());
+                if (cached.hasClaimed()) {
+                    refreshInBackground(request, cached);
+                }
+                DnsLookupResponse response = cached.merge(request, List.of());
+                replayLocations(response, listener);
+                return response;
+            }
+            lookupResultCache.refreshFinished(cached);
+        }
+
+        // The listener failing (client gone) is told apart from the upstream failing
+        LocationResultListener aborting = (location, result) -> {
+            try {
+                listener.onLocationResult(location, result);
+            } catch (RuntimeException e) {
+                throw new StreamAbortedException(e);
+            }
+        };
+        DnsLookupResponse response = callUpstream(request, () -> lookupBackend.streamDnsLookup(request, aborting));
+        if (cacheEnabled) {
+            lookupResultCache.put(request, response);
+        }
+        return recordIfNegative(request, response);
+    }
+
+    /**
+     * Refresh in the background the request's cached cells that expire within
+     * the given time. Returns whether any refresh was started.
+     */
+    public boolean refreshIfExpiring(DnsLookupRequest request, Duration within) {
+        CachedCells expiring = lookupResultCache.claimExpiring(request, within);
+        if (!expiring.hasClaimed()) {
+            return false;
+        }
+        refreshInBackground(request, expiring);
+        return true;
+    }
+
+    private void refreshInBackground(DnsLookupRequest request, CachedCells cached) {
+        // Nobody waits on a refresh, so it yields to live traffic and has no deadline
+        List<DnsLookupRequest> refreshes = cached.refreshRequests(request);
+        refreshes.forEach(refresh -> {
+            refresh.setPriority(LookupPriority.BULK);
+            refresh.setDeadlineNanos(null);
+        });
+        lookupExecutor.execute(() -> {
+            try {
+                for (DnsLookupResponse response : fetchAll(refreshes)) {
+                    logger.info("Revalidated DNS lookup for {}: {}", request.getDomain(), response.getStatus());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Revalidating DNS lookup for {} failed: {}", request.getDomain(), e.getMessage());
+            } finally {
+                lookupResultCache.refreshFinished(cached);
+            }
+        });
+    }
+
+    // Upstream errors and timeouts fall back to expired answers within max-stale, if all cells have one
+    private DnsLookupResponse staleIfFailed(DnsLookupRequest request, DnsLookupResponse response) {
+        if (!"error".equals(response.getStatus()) && !"timeout".equals(response.getStatus())) {
+            return response;
+        }
+
+        CachedCells stale = lookupResultCache.lookupStale(request);
+        if (!stale.isComplete()) {
+            return response;
+        }
+
+        logger.warn("Upstream lookup for {} failed ({}), serving stale cache entry",
+                    response.getDomain(), response.getMessage());
+        Span.current().setAttribute("cache.stale", true);
+        return stale.merge(request, List.of());
+    }
+
+    private DnsLookupResponse recordIfNegative(DnsLookupRequest request, DnsLookupResponse response) {
+        if (negativeLookupCache.isEnabled() && NegativeLookupCache.isNonExistent(response)) {
+            negativeLookupCache.record(request.getDomain());
+        }
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void replayLocations(DnsLookupResponse response, LocationResultListener listener) {
+        if (response.getResults() == null
+                || !(response.getResults().get("by_location") instanceof Map<?, ?> byLocation)) {
+            return;
+        }
+        byLocation.forEach((location, result) -> {
+            if (result instanceof Map<?, ?> locationResult) {
+                listener.onLocationResult(String.valueOf(location), (Map<String, Object>) locationResult);
+            }
+        });
+    }
+
+    // Upstream requests for different cells of one lookup run side by side
+    private List<DnsLookupResponse> fetchAll(List<DnsLookupRequest> requests) {
+        if (requests.size() == 1) {
+            return List.of(fetchCoalesced(requests.get(0)));
+        }
+
+        List<CompletableFuture<DnsLookupResponse>> futures = new ArrayList<>(requests.size());
+        for (DnsLookupRequest request : requests) {
+            futures.add(CompletableFuture.supplyAsync(() -> fetchCoalesced(request), lookupExecutor));
+        }
+
+        List<DnsLookupResponse> responses = new ArrayList<>(requests.size());
+        try {
+            for (CompletableFuture<DnsLookupResponse> future : futures) {
+                responses.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return responses;
+    }
+
+    private DnsLookupResponse fetchCoalesced(DnsLookupRequest request) {
+        if (coalescingEnabled) {
+            return lookupCoalescer.execute(request, () -> fetch(request));
+        }
+        return fetch(request);
+    }
+
+    private DnsLookupResponse fetch(DnsLookupRequest request) {
+        DnsLookupResponse response = callUpstream(request, () -> lookupMicroBatcher != null
+            ? lookupMicroBatcher.submit(request)
+            : lookupBackend.submitDnsLookup(request));
+
+        // Error-free answers are kept per cell, even from partial responses
+        if (cacheEnabled) {
+            lookupResultCache.put(request, response);
+        }
+        return response;
+    }
+
+    /**
+     * Make one upstream call, unless the circuit breaker is open, once a
+     * concurrency-limit slot is free, and report its outcome to both. A call
+     * the breaker rejects or that misses its deadline gets an error or timeout
+     * response, which the caller may answer from cache instead.
+     */
+    private DnsLookupResponse callUpstream(DnsLookupRequest request, Supplier<DnsLookupResponse> upstream) {
+        UpstreamCircuitBreaker.Call call = circuitBreaker.tryAcquire();
+        if (call == null) {
+            logger.warn("Upstream circuit breaker open, failing fast for {}", request.getDomain());
+            return UpstreamCircuitBreaker.openResponse(request);
+        }
+
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = acquire(request);
+        } catch (ConcurrencyLimitExceededException e) {
+            call.ignored();
+            throw e;
+        }
+        if (permit == null) {
+            // Cells already cached still make a partial answer
+            call.ignored();
+            return LookupDeadlines.deadlineExceeded(request);
+        }
+
+        DnsLookupResponse response;
+        try {
+            response = upstream.get();
+        } catch (StreamAbortedException e) {
+            permit.released();
+            call.ignored();
+            throw e;
+        } catch (RuntimeException e) {
+            permit.dropped();
+            call.failed();
+            throw e;
+        }
+        // Cut short by the caller's deadline: says nothing about the upstream
+        if (lookupDeadlines.isExpired(request)) {
+            permit.released();
+            call.ignored();
+        } else {
+            permit.complete(response);
+            call.complete(response);
+        }
+        return response;
+    }
+
+    // Waits for an upstream slot no longer than the request's deadline; null once that has passed
+    private AdaptiveConcurrencyLimiter.Permit acquire(DnsLookupRequest request) {
+        Duration remaining = lookupDeadlines.remaining(request);
+        if (remaining != null && !remaining.isPositive()) {
+            return null;
+        }
+        try {
+            return concurrencyLimiter.acquire(request.getPriority(), remaining);
+        } catch (ConcurrencyLimitExceededException e) {
+            if (lookupDeadlines.isExpired(request)) {
+                return null;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.cache.HotKeyTracker;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.HotKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the cached answers of the hottest domains shortly before they
+ * expire, so popular domains never miss the cache or get served stale. Only
+ * domains above gateway.hot-keys.min-rate requests per second qualify, and
+ * only the locations and record types they were actually requested for are
+ * refreshed.
+ */
+@Service
+public class HotKeyRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyRefresher.class);
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private DnsLookupService dnsLookupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${gateway.hot-keys.top:20}")
+    private int top;
+
+    @Value("${gateway.hot-keys.min-rate:0.2}")
+    private double minRate;
+
+    @Value("${gateway.hot-keys.refresh-ahead:5s}")
+    private Duration refreshAhead;
+
+    @Value("${gateway.hot-keys.refresh-interval:1s}")
+    private Duration refreshInterval;
+
+    private ScheduledExecutorService scheduler;
+    private Counter refreshes;
+
+    @PostConstruct
+    void init() {
+        if (!cacheEnabled || !hotKeyTracker.isEnabled()) {
+            return;
+        }
+
+        refreshes = Counter.builder("gateway.hot_keys.refreshes")
+            .description("Proactive refreshes of hot domains about to expire").register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-key-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshHotKeys, refreshInterval.toMillis(),
+                                         refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void refreshHotKeys() {
+        try {
+            for (HotKey hotKey : hotKeyTracker.top(top)) {
+                if (hotKey.getRequestsPerSecond() < minRate) {
+                    break;
+                }
+
+                DnsLookupRequest request = new DnsLookupRequest();
+                request.setDomain(hotKey.getDomain());
+                request.setLocations(hotKey.getLocations());
+                request.setRecordTypes(hotKey.getRecordTypes());
+                if (dnsLookupService.refreshIfExpiring(request, refreshAhead)) {
+                    logger.debug("Refreshing hot domain {} ahead of expiry", hotKey.getDomain());
+                    refreshes.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the schedule alive: an exception would cancel future runs
+            logger.warn("Refreshing hot domains failed: {}", e.getMessage());
+        }
+    }
+}
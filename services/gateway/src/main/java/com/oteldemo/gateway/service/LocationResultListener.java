@@ -0,0 +1,13 @@
+package com.oteldemo.gateway.service;
+
+import java.util.Map;
+
+/**
+ * Receives each location's result of a streamed lookup as soon as it is available.
+ * Throwing aborts the stream.
+ */
+@FunctionalInterface
+public interface LocationResultListener {
+
+    void onLocationResult(String location, Map<String, Object> result);
+}
@@ -0,0 +1,19 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+
+/**
+ * Where cache misses are sent: the orchestrator over HTTP (default) or, with
+ * gateway.backend=redis, the worker streams directly.
+ */
+public interface LookupBackend {
+
+    DnsLookupResponse submitDnsLookup(DnsLookupRequest request);
+
+    /**
+     * Like {@link #submitDnsLookup}, but hands each location's result to the
+     * listener as soon as it arrives.
+     */
+    DnsLookupResponse streamDnsLookup(DnsLookupRequest request, LocationResultListener listener);
+}
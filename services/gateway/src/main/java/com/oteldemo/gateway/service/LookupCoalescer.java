@@ -0,0 +1,167 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.cache.LookupResultCache;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical lookups: the first caller for a key
+ * runs the upstream call, concurrent callers for the same key wait for it
+ * and share its response.
+ *
+ * A follower waits no longer than its own deadline. The leader's outcomes
+ * that belong to the leader alone are not shared: a timeout response (the
+ * leader's deadline, not necessarily the follower's) and a concurrency-limit
+ * rejection (the leader's priority) make the follower run its own call.
+ */
+@Component
+public class LookupCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupCoalescer.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private DistributionSummary coalescedPerKey;
+
+    @PostConstruct
+    void registerMetrics() {
+        coalescedPerKey = DistributionSummary.builder("gateway.lookup.coalesced")
+            .description("Requests that joined an in-flight lookup instead of calling upstream, per key")
+            .baseUnit("requests")
+            .register(meterRegistry);
+    }
+
+    public DnsLookupResponse execute(DnsLookupRequest request, Supplier<DnsLookupResponse> upstreamCall) {
+        String key = LookupResultCache.keyFor(request);
+        InFlight mine = new InFlight();
+        InFlight existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            existing.waiters.incrementAndGet();
+            Span.current().setAttribute("lookup.coalesced", true);
+            logger.info("Joining in-flight lookup for {}", key);
+            DnsLookupResponse shared = follow(request, existing);
+            if (shared != null) {
+                return shared;
+            }
+            // Not answered for this caller: it makes its own call, uncoalesced
+            Span.current().setAttribute("lookup.coalesced_retry", true);
+            return upstreamCall.get();
+        }
+
+        try {
+            DnsLookupResponse response = upstreamCall.get();
+            mine.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.response.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+
+            int waiters = mine.waiters.get();
+            coalescedPerKey.record(waiters);
+            Span.current().setAttribute("lookup.coalesced_waiters", waiters);
+        }
+    }
+
+    // The leader's response if it answers this follower too, or null if the follower must call itself
+    private DnsLookupResponse follow(DnsLookupRequest request, InFlight leader) {
+        Duration remaining = lookupDeadlines.remaining(request);
+        DnsLookupResponse response;
+        try {
+            response = remaining == null
+                ? leader.response.get()
+                : leader.response.get(Math.max(0, remaining.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return LookupDeadlines.deadlineExceeded(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DnsLookupResponse(request.getDomain(), "error", null, "Interrupted waiting for in-flight lookup");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConcurrencyLimitExceededException) {
+                return null;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+        return sharedWith(request, response) ? response : null;
+    }
+
+    private boolean sharedWith(DnsLookupRequest request, DnsLookupResponse response) {
+        return !"timeout".equals(response.getStatus()) || lookupDeadlines.isExpired(request);
+    }
+
+    /**
+     * Non-blocking variant for the WebFlux path: followers subscribe to the
+     * leader's result instead of parking a thread on it.
+     */
+    public Mono<DnsLookupResponse> executeAsync(DnsLookupRequest request, Supplier<Mono<DnsLookupResponse>> upstreamCall) {
+        String key = LookupResultCache.keyFor(request);
+        return Mono.defer(() -> {
+            InFlight mine = new InFlight();
+            InFlight existing = inFlight.putIfAbsent(key, mine);
+
+            if (existing != null) {
+                existing.waiters.incrementAndGet();
+                Span.current().setAttribute("lookup.coalesced", true);
+                logger.info("Joining in-flight lookup for {}", key);
+                Mono<DnsLookupResponse> shared = Mono.fromFuture(existing.response, true);
+                Duration remaining = lookupDeadlines.remaining(request);
+                if (remaining != null) {
+                    shared = shared.timeout(remaining.isPositive() ? remaining : Duration.ZERO,
+                                            Mono.fromSupplier(() -> LookupDeadlines.deadlineExceeded(request)));
+                }
+                return shared
+                    .flatMap(response -> sharedWith(request, response) ? Mono.just(response) : upstreamCall.get())
+                    .onErrorResume(ConcurrencyLimitExceededException.class, e -> upstreamCall.get());
+            }
+
+            Span leaderSpan = Span.current();
+            return upstreamCall.get()
+                .doOnNext(mine.response::complete)
+                .doOnError(mine.response::completeExceptionally)
+                .doFinally(signal -> {
+                    inFlight.remove(key, mine);
+                    // Leader cancelled before answering: release the followers too
+                    mine.response.cancel(false);
+
+                    int waiters = mine.waiters.get();
+                    coalescedPerKey.record(waiters);
+                    leaderSpan.setAttribute("lookup.coalesced_waiters", waiters);
+                });
+        });
+    }
+
+    private static final class InFlight {
+        private final CompletableFuture<DnsLookupResponse> response = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+    }
+}
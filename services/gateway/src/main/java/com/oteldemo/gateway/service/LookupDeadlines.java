@@ -0,0 +1,104 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Turns the caller's timeout into a deadline for the lookup and tells the
+ * upstream calls how much of it is left. The X-Request-Timeout header (in
+ * milliseconds) wins over the request body's timeout_ms, then
+ * gateway.deadline.default-timeout applies; all are capped at
+ * gateway.deadline.max-timeout. The deadline is fixed when the request
+ * arrives, so time spent in the gateway (cache, admission queue, batching)
+ * comes out of the budget handed upstream.
+ */
+@Component
+public class LookupDeadlines {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    // 0 means lookups without a timeout have no deadline
+    @Value("${gateway.deadline.default-timeout:0s}")
+    private Duration defaultTimeout;
+
+    @Value("${gateway.deadline.max-timeout:30s}")
+    private Duration maxTimeout;
+
+    // Kept back from the budget sent upstream, for the answer to travel back
+    @Value("${gateway.deadline.upstream-margin:100ms}")
+    private Duration upstreamMargin;
+
+    /**
+     * Set the request's deadline from the header, body and defaults.
+     */
+    public void resolve(DnsLookupRequest request, String timeoutHeader) {
+        long timeoutMs = parse(timeoutHeader);
+        if (timeoutMs <= 0 && request.getTimeoutMs() != null) {
+            timeoutMs = request.getTimeoutMs();
+        }
+        if (timeoutMs <= 0) {
+            timeoutMs = defaultTimeout.toMillis();
+        }
+        if (timeoutMs <= 0) {
+            request.setDeadlineNanos(null);
+            return;
+        }
+        timeoutMs = Math.min(timeoutMs, maxTimeout.toMillis());
+        request.setTimeoutMs(timeoutMs);
+        request.setDeadlineNanos(System.nanoTime() + timeoutMs * 1_000_000);
+    }
+
+    /**
+     * Time left until the request's deadline (zero or negative once passed),
+     * or null if it has none.
+     */
+    public Duration remaining(DnsLookupRequest request) {
+        if (request.getDeadlineNanos() == null) {
+            return null;
+        }
+        return Duration.ofNanos(request.getDeadlineNanos() - System.nanoTime());
+    }
+
+    public boolean isExpired(DnsLookupRequest request) {
+        Duration remaining = remaining(request);
+        return remaining != null && !remaining.isPositive();
+    }
+
+    /**
+     * How long the upstream may spend collecting results: the remaining time
+     * less the margin, or null if the request has no deadline.
+     */
+    public Duration upstreamBudget(DnsLookupRequest request) {
+        Duration remaining = remaining(request);
+        if (remaining == null) {
+            return null;
+        }
+        // With little time left, upstream still gets half of it rather than nothing
+        Duration budget = remaining.minus(upstreamMargin);
+        Duration half = remaining.dividedBy(2);
+        return budget.compareTo(half) > 0 ? budget : half;
+    }
+
+    /**
+     * The response for a lookup whose deadline passed before upstream answered.
+     */
+    public static DnsLookupResponse deadlineExceeded(DnsLookupRequest request) {
+        return new DnsLookupResponse(
+            request.getDomain(), "timeout", null, "Request deadline exceeded before upstream answered");
+    }
+
+    private static long parse(String timeoutHeader) {
+        if (timeoutHeader == null || timeoutHeader.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(timeoutHeader.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
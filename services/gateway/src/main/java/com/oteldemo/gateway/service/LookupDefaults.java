@@ -0,0 +1,35 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defaults applied to incoming lookups that leave out locations or record types.
+ */
+public final class LookupDefaults {
+
+    public static final List<String> LOCATIONS = List.of("us-east-1", "eu-west-1", "asia-south-1");
+
+    public static final List<String> RECORD_TYPES = List.of("A", "AAAA", "MX", "TXT", "NS");
+
+    private LookupDefaults() {
+    }
+
+    public static boolean hasDomain(DnsLookupRequest request) {
+        return request.getDomain() != null && !request.getDomain().isEmpty();
+    }
+
+    public static void apply(DnsLookupRequest request) {
+        // Set default locations if not provided
+        if (request.getLocations() == null || request.getLocations().isEmpty()) {
+            request.setLocations(new ArrayList<>(LOCATIONS));
+        }
+
+        // Set default record types if not provided
+        if (request.getRecordTypes() == null || request.getRecordTypes().isEmpty()) {
+            request.setRecordTypes(new ArrayList<>(RECORD_TYPES));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.TraceId;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded, expiring in-memory store for asynchronous lookup jobs.
+ *
+ * Completed jobs are kept for gateway.jobs.ttl and are the first to go when
+ * the store is full. Expired jobs are purged as jobs are created and read,
+ * at most once per {@value #PURGE_INTERVAL_MILLIS} ms. Pending jobs are never
+ * evicted; once max-entries jobs are pending, new submissions are refused.
+ */
+@Component
+public class LookupJobStore {
+
+    private static final long PURGE_INTERVAL_MILLIS = 1000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.jobs.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${gateway.jobs.ttl:5m}")
+    private Duration ttl;
+
+    // Insertion-ordered, so the oldest jobs are met first when purging; guarded by "this"
+    private final LinkedHashMap<String, Entry> jobs = new LinkedHashMap<>();
+
+    private int pending;
+    private long nextPurgeMillis;
+
+    private Counter rejected;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("gateway.jobs", this, store -> store.count(true))
+            .tag("status", LookupJob.PENDING).description("Asynchronous lookup jobs held by status")
+            .register(meterRegistry);
+        Gauge.builder("gateway.jobs", this, store -> store.count(false))
+            .tag("status", LookupJob.COMPLETED).description("Asynchronous lookup jobs held by status")
+            .register(meterRegistry);
+        rejected = Counter.builder("gateway.jobs.rejected")
+            .description("Asynchronous lookups refused because the job store was full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Register a new pending job under the preferred id, or a random one if that
+     * id is invalid or already in use. Returns null if the store is full of
+     * pending jobs.
+     */
+    public synchronized LookupJob create(String preferredId, String domain) {
+        long now = System.currentTimeMillis();
+        if (jobs.size() >= maxEntries || now >= nextPurgeMillis) {
+            purge(now);
+        }
+
+        if (jobs.size() >= maxEntries && !evictOldestCompleted()) {
+            rejected.increment();
+            return null;
+        }
+
+        String jobId = preferredId;
+        if (jobId == null || !TraceId.isValid(jobId) || jobs.containsKey(jobId)) {
+            jobId = UUID.randomUUID().toString().replace("-", "");
+        }
+
+        LookupJob job = new LookupJob(jobId, domain, LookupJob.PENDING, Instant.now(), null, null);
+        jobs.put(jobId, new Entry(job, Long.MAX_VALUE));
+        pending++;
+        return copy(job);
+    }
+
+    public synchronized void complete(String jobId, DnsLookupResponse result) {
+        Entry entry = jobs.get(jobId);
+        if (entry == null || !LookupJob.PENDING.equals(entry.job.getStatus())) {
+            return;
+        }
+
+        entry.job.setStatus(LookupJob.COMPLETED);
+        entry.job.setCompletedAt(Instant.now());
+        entry.job.setResult(result);
+        entry.expiresAtMillis = System.currentTimeMillis() + ttl.toMillis();
+        pending--;
+    }
+
+    public synchronized LookupJob get(String jobId) {
+        long now = System.currentTimeMillis();
+        if (now >= nextPurgeMillis) {
+            purge(now);
+        }
+        Entry entry = jobs.get(jobId);
+        if (entry == null || entry.expiresAtMillis <= now) {
+            return null;
+        }
+        return copy(entry.job);
+    }
+
+    private synchronized int count(boolean pendingJobs) {
+        return pendingJobs ? pending : jobs.size() - pending;
+    }
+
+    private void purge(long nowMillis) {
+        jobs.values().removeIf(entry -> entry.expiresAtMillis <= nowMillis);
+        nextPurgeMillis = nowMillis + PURGE_INTERVAL_MILLIS;
+    }
+
+    private boolean evictOldestCompleted() {
+        Iterator<Map.Entry<String, Entry>> it = jobs.entrySet().iterator();
+        while (it.hasNext()) {
+            if (!LookupJob.PENDING.equals(it.next().getValue().job.getStatus())) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LookupJob copy(LookupJob job) {
+        return new LookupJob(job.getJobId(), job.getDomain(), job.getStatus(),
+                             job.getSubmittedAt(), job.getCompletedAt(), job.getResult());
+    }
+
+    private static final class Entry {
+        private final LookupJob job;
+        private long expiresAtMillis;
+
+        private Entry(LookupJob job, long expiresAtMillis) {
+            this.job = job;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
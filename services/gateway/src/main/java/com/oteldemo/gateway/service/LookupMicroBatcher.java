@@ -0,0 +1,223 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups concurrent cache misses into batched orchestrator calls.
+ *
+ * A lookup waits at most gateway.batching.window for others to join it (or
+ * until max-size lookups are queued); the group is then sent as one request to
+ * the orchestrator's batch endpoint and the responses are handed back to the
+ * individual callers. A lookup that nobody joins is sent on its own
+ * through the regular endpoint.
+ *
+ * Only used with the orchestrator backend: the Redis backend has no per-lookup
+ * HTTP round trip to save.
+ */
+@Component
+@ConditionalOnExpression("${gateway.batching.enabled:false} and '${gateway.backend:orchestrator}' == 'orchestrator'")
+public class LookupMicroBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupMicroBatcher.class);
+
+    @Autowired
+    private OrchestratorService orchestratorService;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Value("${gateway.batching.window:2ms}")
+    private Duration window;
+
+    @Value("${gateway.batching.max-size:64}")
+    private int maxSize;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    private DistributionSummary batchSize;
+    private Timer queueDelay;
+
+    @PostConstruct
+    void start() {
+        batchSize = DistributionSummary.builder("gateway.batcher.batch.size")
+            .description("Lookups sent per orchestrator call by the micro-batcher")
+            .baseUnit("requests")
+            .register(meterRegistry);
+        queueDelay = Timer.builder("gateway.batcher.queue.delay")
+            .description("Time a lookup waited in the micro-batcher before being sent")
+            .register(meterRegistry);
+
+        flusher = Thread.ofPlatform().name("lookup-batcher").daemon().start(this::collectBatches);
+    }
+
+    /**
+     * Lookups still queued, or collected but not yet sent, fail rather than
+     * leave their callers waiting; batches already sent complete as usual.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(1));
+        failQueued();
+    }
+
+    public DnsLookupResponse submit(DnsLookupRequest request) {
+        Pending pending = new Pending(request, Context.current(), System.nanoTime());
+        queue.add(pending);
+        if (!running) {
+            // Raced with stop(), which may already have drained the queue
+            failQueued();
+        }
+
+        // A caller stops waiting at its deadline; the batch still completes for the others
+        Duration remaining = lookupDeadlines.remaining(request);
+        if (remaining != null) {
+            pending.response.completeOnTimeout(LookupDeadlines.deadlineExceeded(request),
+                                               Math.max(0, remaining.toNanos()), TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            return pending.response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void collectBatches() {
+        while (running) {
+            List<Pending> batch = new ArrayList<>(maxSize);
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = first.enqueuedAt + window.toNanos();
+                while (batch.size() < maxSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(batch);
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Micro-batcher failed to dispatch a batch: {}", e.getMessage(), e);
+                batch.forEach(pending -> pending.response.completeExceptionally(e));
+            }
+        }
+    }
+
+    private void failQueued() {
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left);
+    }
+
+    private static void fail(List<Pending> pendings) {
+        if (pendings.isEmpty()) {
+            return;
+        }
+        IllegalStateException stopped = new IllegalStateException("Lookup micro-batcher stopped");
+        pendings.forEach(pending -> pending.response.completeExceptionally(stopped));
+    }
+
+    private void dispatch(List<Pending> batch) {
+        long now = System.nanoTime();
+        batchSize.record(batch.size());
+        for (Pending pending : batch) {
+            queueDelay.record(now - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        // Lookups whose deadline passed while queued are not sent
+        batch.removeIf(pending -> pending.response.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // The upstream call blocks, so it runs off the collecting thread
+        lookupExecutor.execute(() -> send(batch));
+    }
+
+    private void send(List<Pending> batch) {
+        try {
+            if (batch.size() == 1) {
+                Pending only = batch.get(0);
+                Runnable lookup = () -> only.response.complete(orchestratorService.submitDnsLookup(only.request));
+                only.context.wrap(lookup).run();
+                return;
+            }
+
+            List<DnsLookupRequest> requests = new ArrayList<>(batch.size());
+            List<Context> contexts = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                requests.add(pending.request);
+                contexts.add(pending.context);
+                Span.fromContext(pending.context).setAttribute("lookup.batch_size", batch.size());
+            }
+
+            List<DnsLookupResponse> responses = orchestratorService.submitDnsLookupBatch(requests, contexts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).response.complete(responses.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.response.completeExceptionally(e));
+        }
+    }
+
+    private static final class Pending {
+        private final DnsLookupRequest request;
+        private final Context context;
+        private final long enqueuedAt;
+        private final CompletableFuture<DnsLookupResponse> response = new CompletableFuture<>();
+
+        private Pending(DnsLookupRequest request, Context context, long enqueuedAt) {
+            this.request = request;
+            this.context = context;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
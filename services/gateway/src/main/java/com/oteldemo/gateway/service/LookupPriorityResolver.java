@@ -0,0 +1,85 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.LookupPriority;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides the priority class of an incoming lookup. An API key listed in
+ * gateway.priority.api-keys wins, so a crawler's key cannot be upgraded by a
+ * header; then the X-Priority header, then the request body, then
+ * gateway.priority.default, or gateway.priority.batch-default for entries of
+ * a batch request.
+ */
+@Component
+public class LookupPriorityResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LookupPriorityResolver.class);
+
+    public static final String PRIORITY_HEADER = "X-Priority";
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    // Comma-separated key=class pairs, e.g. crawler-key=bulk,ui-key=interactive
+    @Value("${gateway.priority.api-keys:}")
+    private String apiKeyMapping;
+
+    @Value("${gateway.priority.default:interactive}")
+    private String defaultPriority;
+
+    // Batches are mostly crawlers, so they yield to single lookups unless they ask otherwise
+    @Value("${gateway.priority.batch-default:bulk}")
+    private String batchDefaultPriority;
+
+    private final Map<String, LookupPriority> priorityByApiKey = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String pair : apiKeyMapping.split(",")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length != 2) {
+                continue;
+            }
+            LookupPriority priority = LookupPriority.parse(parts[1]);
+            if (priority == null) {
+                logger.warn("Ignoring unknown priority class '{}' in gateway.priority.api-keys", parts[1]);
+                continue;
+            }
+            priorityByApiKey.put(parts[0].trim(), priority);
+        }
+    }
+
+    /**
+     * Set the request's priority from the headers, body and defaults.
+     */
+    public void resolve(DnsLookupRequest request, String priorityHeader, String apiKey) {
+        resolve(request, priorityHeader, apiKey, defaultPriority);
+    }
+
+    /**
+     * As {@link #resolve}, for one entry of a batch request.
+     */
+    public void resolveBatchEntry(DnsLookupRequest request, String priorityHeader, String apiKey) {
+        resolve(request, priorityHeader, apiKey, batchDefaultPriority);
+    }
+
+    private void resolve(DnsLookupRequest request, String priorityHeader, String apiKey, String fallback) {
+        LookupPriority priority = apiKey != null ? priorityByApiKey.get(apiKey.trim()) : null;
+        if (priority == null) {
+            priority = LookupPriority.parse(priorityHeader);
+        }
+        if (priority == null) {
+            priority = request.getPriority();
+        }
+        if (priority == null) {
+            priority = LookupPriority.parse(fallback);
+        }
+        request.setPriority(priority != null ? priority : LookupPriority.INTERACTIVE);
+    }
+}
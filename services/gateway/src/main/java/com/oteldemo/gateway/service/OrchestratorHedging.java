@@ -0,0 +1,156 @@
+package com.oteldemo.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * When and how often to hedge an orchestrator call, i.e. send a second copy
+ * to another instance if the first is slow. The hedge delay follows the
+ * configured percentile of recent orchestrator latencies (initial-delay
+ * until min-samples calls have been seen), clamped to [min-delay, max-delay].
+ * It is recomputed at most every delay-refresh rather than on every call.
+ *
+ * Hedges are paid for from a budget: every call adds budget-percent/100 of a
+ * hedge, each hedge spends a whole one, and at most {@value #MAX_SAVED_HEDGES}
+ * are saved up. Over time hedges therefore stay within budget-percent of
+ * calls, even when the orchestrator as a whole slows down and every call
+ * would otherwise qualify.
+ */
+@Component
+public class OrchestratorHedging {
+
+    private static final double MAX_SAVED_HEDGES = 10;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${gateway.hedging.percentile:0.95}")
+    private double percentile;
+
+    @Value("${gateway.hedging.initial-delay:500ms}")
+    private Duration initialDelay;
+
+    @Value("${gateway.hedging.min-delay:20ms}")
+    private Duration minDelay;
+
+    @Value("${gateway.hedging.max-delay:2s}")
+    private Duration maxDelay;
+
+    @Value("${gateway.hedging.min-samples:100}")
+    private long minSamples;
+
+    @Value("${gateway.hedging.budget-percent:5}")
+    private double budgetPercent;
+
+    @Value("${gateway.hedging.delay-refresh:1s}")
+    private Duration delayRefresh;
+
+    private Timer latency;
+    private Counter budgetExhausted;
+    private Counter primaryWins;
+    private Counter hedgeWins;
+
+    private volatile Duration currentDelay;
+    private final AtomicLong delayComputedNanos = new AtomicLong();
+
+    // Guarded by this
+    private double savedHedges;
+
+    @PostConstruct
+    void init() {
+        latency = Timer.builder("gateway.hedging.orchestrator.latency")
+            .description("Latency of answered orchestrator calls, from which the hedge delay is taken")
+            .publishPercentiles(percentile)
+            .distributionStatisticExpiry(Duration.ofMinutes(1))
+            .register(meterRegistry);
+        budgetExhausted = Counter.builder("gateway.hedging.budget_exhausted")
+            .description("Slow orchestrator calls not hedged because the hedge budget was spent")
+            .register(meterRegistry);
+        primaryWins = winnerCounter("primary");
+        hedgeWins = winnerCounter("hedge");
+        currentDelay = initialDelay;
+        delayComputedNanos.set(System.nanoTime());
+    }
+
+    private Counter winnerCounter(String winner) {
+        return Counter.builder("gateway.hedging.hedges").tag("winner", winner)
+            .description("Hedged orchestrator calls, by which copy answered first")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordLatency(long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * How long to wait for the first call before hedging it.
+     */
+    public Duration delay() {
+        long computedAt = delayComputedNanos.get();
+        long now = System.nanoTime();
+        // One caller per interval recomputes; the others use the previous delay
+        if (now - computedAt >= delayRefresh.toNanos() && delayComputedNanos.compareAndSet(computedAt, now)) {
+            currentDelay = computeDelay();
+        }
+        return currentDelay;
+    }
+
+    private Duration computeDelay() {
+        if (latency.count() < minSamples) {
+            return initialDelay;
+        }
+        Duration observed = initialDelay;
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            observed = Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+        }
+        if (observed.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return observed.compareTo(maxDelay) > 0 ? maxDelay : observed;
+    }
+
+    /**
+     * Count a hedged call by which copy answered first.
+     */
+    public void recordWinner(boolean hedge) {
+        (hedge ? hedgeWins : primaryWins).increment();
+    }
+
+    /**
+     * Count one orchestrator call towards the hedge budget.
+     */
+    public synchronized void onCall() {
+        savedHedges = Math.min(MAX_SAVED_HEDGES, savedHedges + budgetPercent / 100);
+    }
+
+    /**
+     * Spend one hedge from the budget, if there is one left.
+     */
+    public boolean tryHedge() {
+        synchronized (this) {
+            if (savedHedges >= 1) {
+                savedHedges -= 1;
+                return true;
+            }
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+}
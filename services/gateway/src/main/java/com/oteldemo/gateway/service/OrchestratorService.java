@@ -1,33 +1,154 @@
 package com.oteldemo.gateway.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.config.OrchestratorClientConfig;
 import com.oteldemo.gateway.model.DnsLookupRequest;
 import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class OrchestratorService {
+@ConditionalOnProperty(name = "gateway.backend", havingValue = "orchestrator", matchIfMissing = true)
+public class OrchestratorService implements LookupBackend {
 
     private static final Logger logger = LoggerFactory.getLogger(OrchestratorService.class);
 
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
     @Autowired
     private RestTemplate restTemplate;
 
-    @Value("${orchestrator.url:http://orchestrator:8001}")
-    private String orchestratorUrl;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Autowired
+    private OrchestratorHedging hedging;
+
+    @Autowired
+    private ExecutorService lookupExecutor;
+
+    // Orchestrator instances, comma-separated; calls rotate over them and hedges go to the next one
+    @Value("${orchestrator.urls:${orchestrator.url:http://orchestrator:8001}}")
+    private List<String> orchestratorUrls;
+
+    private final AtomicInteger nextInstance = new AtomicInteger();
+
+    private boolean hedged;
+
+    @PostConstruct
+    void init() {
+        // A hedge to the same instance would only double its load
+        hedged = hedging.isEnabled() && orchestratorUrls.size() >= 2;
+        if (hedging.isEnabled() && !hedged) {
+            logger.warn("Hedging is enabled but only one orchestrator URL is configured ({}); not hedging",
+                        orchestratorUrls);
+        }
+    }
 
+    @Override
     public DnsLookupResponse submitDnsLookup(DnsLookupRequest request) {
-        String url = orchestratorUrl + "/api/v1/dns/orchestrate";
+        int instance = Math.floorMod(nextInstance.getAndIncrement(), orchestratorUrls.size());
+        if (!hedged) {
+            return post(orchestratorUrls.get(instance), request);
+        }
+        return submitHedged(request, instance);
+    }
+
+    /**
+     * Send the lookup to one instance and, if it has not answered within the
+     * hedge delay and the hedge budget allows, a copy to the next instance.
+     * The first useful answer wins and the other call is cancelled, which
+     * interrupts its virtual thread and closes its connection. An error
+     * answer only wins if there is nothing left to wait for.
+     */
+    private DnsLookupResponse submitHedged(DnsLookupRequest request, int instance) {
+        hedging.onCall();
+        Span currentSpan = Span.current();
+        ExecutorCompletionService<DnsLookupResponse> race = new ExecutorCompletionService<>(lookupExecutor);
+        List<Future<DnsLookupResponse>> calls = new ArrayList<>(2);
+        calls.add(race.submit(() -> post(orchestratorUrls.get(instance), request)));
+
+        try {
+            Duration delay = hedging.delay();
+            Future<DnsLookupResponse> done = race.poll(delay.toNanos(), TimeUnit.NANOSECONDS);
+            Duration remaining = lookupDeadlines.remaining(request);
+            if (done == null && (remaining == null || remaining.isPositive()) && hedging.tryHedge()) {
+                String hedgeUrl = orchestratorUrls.get((instance + 1) % orchestratorUrls.size());
+                logger.info("No orchestrator answer for {} after {} ms, hedging to {}",
+                            request.getDomain(), delay.toMillis(), hedgeUrl);
+                currentSpan.setAttribute("orchestrator.hedged", true);
+                calls.add(race.submit(() -> post(hedgeUrl, request)));
+            }
+
+            int pending = calls.size();
+            DnsLookupResponse response = null;
+            while (pending > 0) {
+                if (done == null) {
+                    done = race.take();
+                }
+                pending--;
+                response = done.get();
+                if (!"error".equals(response.getStatus())) {
+                    break;
+                }
+                done = null;
+            }
+            if (calls.size() > 1) {
+                boolean hedgeWon = done != calls.get(0);
+                currentSpan.setAttribute("orchestrator.hedge_winner", hedgeWon ? "hedge" : "primary");
+                hedging.recordWinner(hedgeWon);
+            }
+            return response;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DnsLookupResponse(request.getDomain(), "error", null, "Interrupted waiting for orchestrator");
+        } catch (ExecutionException e) {
+            // post() answers every failure with an error response, so this is unexpected
+            logger.error("Hedged orchestrator call failed: {}", e.getMessage(), e);
+            return new DnsLookupResponse(request.getDomain(), "error", null,
+                                         "Failed to communicate with orchestrator: " + e.getMessage());
+        } finally {
+            calls.forEach(call -> call.cancel(true));
+        }
+    }
+
+    private DnsLookupResponse post(String baseUrl, DnsLookupRequest request) {
+        String url = baseUrl + "/api/v1/dns/orchestrate";
 
         logger.info("Forwarding DNS lookup to orchestrator: {}", url);
 
@@ -35,12 +156,12 @@ public class OrchestratorService {
         currentSpan.setAttribute("orchestrator.url", url);
         String traceId = currentSpan.getSpanContext().getTraceId();
 
+        // Stop waiting once the caller's deadline has passed
+        OrchestratorClientConfig.CALL_TIMEOUT.set(lookupDeadlines.remaining(request));
+        long startNanos = System.nanoTime();
         try {
             // Prepare request body (trace context propagated via HTTP headers automatically)
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("domain", request.getDomain());
-            requestBody.put("locations", request.getLocations());
-            requestBody.put("record_types", request.getRecordTypes());
+            Map<String, Object> requestBody = toRequestBody(request);
 
             // Set headers
             HttpHeaders headers = new HttpHeaders();
@@ -58,6 +179,7 @@ public class OrchestratorService {
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 logger.info("Successfully received response from orchestrator");
+                hedging.recordLatency(System.nanoTime() - startNanos);
                 return response.getBody();
             } else {
                 logger.warn("Orchestrator returned non-success status: {}", response.getStatusCode());
@@ -70,6 +192,16 @@ public class OrchestratorService {
             }
 
         } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled: the hedged copy of this call answered first
+                logger.debug("Orchestrator call to {} cancelled", url);
+                return new DnsLookupResponse(request.getDomain(), "error", null, "Cancelled");
+            }
+            if (lookupDeadlines.isExpired(request)) {
+                logger.warn("Deadline for {} passed waiting for orchestrator", request.getDomain());
+                currentSpan.setAttribute("deadline.exceeded", true);
+                return LookupDeadlines.deadlineExceeded(request);
+            }
             logger.error("Error communicating with orchestrator: {}", e.getMessage(), e);
             currentSpan.recordException(e);
             currentSpan.setStatus(StatusCode.ERROR, "Failed to communicate with orchestrator");
@@ -80,6 +212,192 @@ public class OrchestratorService {
                 null,
                 "Failed to communicate with orchestrator: " + e.getMessage()
             );
+        } finally {
+            OrchestratorClientConfig.CALL_TIMEOUT.remove();
+        }
+    }
+
+    /**
+     * Sends several lookups in one call to the orchestrator's batch endpoint
+     * and returns their responses in order. Each lookup carries its caller's
+     * trace context, so the orchestrator traces it under the original request.
+     */
+    public List<DnsLookupResponse> submitDnsLookupBatch(List<DnsLookupRequest> requests, List<Context> callerContexts) {
+        String url = nextUrl() + "/api/v1/dns/orchestrate/batch";
+
+        logger.info("Forwarding batch of {} DNS lookups to orchestrator: {}", requests.size(), url);
+
+        OrchestratorClientConfig.CALL_TIMEOUT.set(batchCallTimeout(requests));
+        try {
+            List<Map<String, Object>> requestBody = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                Map<String, String> traceContext = new HashMap<>();
+                GlobalOpenTelemetry.getPropagators().getTextMapPropagator()
+                    .inject(callerContexts.get(i), traceContext, Map::put);
+
+                Map<String, Object> item = toRequestBody(requests.get(i));
+                item.put("trace_context", traceContext);
+                requestBody.add(item);
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            ResponseEntity<DnsLookupResponse[]> response = restTemplate.exchange(
+                url,
+                HttpMethod.POST,
+                new HttpEntity<>(requestBody, headers),
+                DnsLookupResponse[].class
+            );
+
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null
+                    && response.getBody().length == requests.size()) {
+                logger.info("Successfully received batch response from orchestrator");
+                return List.of(response.getBody());
+            }
+            logger.warn("Orchestrator returned an unusable batch response: {}", response.getStatusCode());
+            return batchError(requests, "Orchestrator returned status: " + response.getStatusCode());
+
+        } catch (Exception e) {
+            logger.error("Error communicating with orchestrator: {}", e.getMessage(), e);
+            return batchError(requests, "Failed to communicate with orchestrator: " + e.getMessage());
+        } finally {
+            OrchestratorClientConfig.CALL_TIMEOUT.remove();
+        }
+    }
+
+    private String nextUrl() {
+        return orchestratorUrls.get(Math.floorMod(nextInstance.getAndIncrement(), orchestratorUrls.size()));
+    }
+
+    // The batch call waits as long as its latest deadline; null if any lookup has none
+    private Duration batchCallTimeout(List<DnsLookupRequest> requests) {
+        Duration latest = null;
+        for (DnsLookupRequest request : requests) {
+            Duration remaining = lookupDeadlines.remaining(request);
+            if (remaining == null) {
+                return null;
+            }
+            if (latest == null || remaining.compareTo(latest) > 0) {
+                latest = remaining;
+            }
+        }
+        return latest;
+    }
+
+    private List<DnsLookupResponse> batchError(List<DnsLookupRequest> requests, String message) {
+        List<DnsLookupResponse> responses = new ArrayList<>(requests.size());
+        for (DnsLookupRequest request : requests) {
+            responses.add(lookupDeadlines.isExpired(request)
+                ? LookupDeadlines.deadlineExceeded(request)
+                : new DnsLookupResponse(request.getDomain(), "error", null, message));
+        }
+        return responses;
+    }
+
+    /**
+     * Streaming variant of {@link #submitDnsLookup}: reads the orchestrator's
+     * NDJSON stream and hands each location's result to the listener as it
+     * arrives. Returns the final aggregated response.
+     */
+    @Override
+    public DnsLookupResponse streamDnsLookup(DnsLookupRequest request, LocationResultListener listener) {
+        String url = nextUrl() + "/api/v1/dns/orchestrate/stream";
+
+        logger.info("Streaming DNS lookup from orchestrator: {}", url);
+
+        Span currentSpan = Span.current();
+        currentSpan.setAttribute("orchestrator.url", url);
+
+        OrchestratorClientConfig.CALL_TIMEOUT.set(lookupDeadlines.remaining(request));
+        try {
+            byte[] requestBody = objectMapper.writeValueAsBytes(toRequestBody(request));
+
+            DnsLookupResponse summary = restTemplate.execute(
+                url,
+                HttpMethod.POST,
+                clientRequest -> {
+                    clientRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    clientRequest.getHeaders().setAccept(List.of(MediaType.APPLICATION_NDJSON));
+                    clientRequest.getBody().write(requestBody);
+                },
+                clientResponse -> readStream(clientResponse.getBody(), request, listener)
+            );
+
+            if (summary != null) {
+                logger.info("Successfully received streamed response from orchestrator");
+                return summary;
+            }
+            logger.warn("Orchestrator stream ended without a summary");
+            return new DnsLookupResponse(
+                request.getDomain(),
+                "error",
+                null,
+                "Orchestrator stream ended without a summary"
+            );
+
+        } catch (StreamAbortedException e) {
+            throw e;
+        } catch (Exception e) {
+            if (lookupDeadlines.isExpired(request)) {
+                // Locations already streamed have reached the listener
+                logger.warn("Deadline for {} passed streaming from orchestrator", request.getDomain());
+                currentSpan.setAttribute("deadline.exceeded", true);
+                return LookupDeadlines.deadlineExceeded(request);
+            }
+            logger.error("Error streaming from orchestrator: {}", e.getMessage(), e);
+            currentSpan.recordException(e);
+            currentSpan.setStatus(StatusCode.ERROR, "Failed to communicate with orchestrator");
+
+            return new DnsLookupResponse(
+                request.getDomain(),
+                "error",
+                null,
+                "Failed to communicate with orchestrator: " + e.getMessage()
+            );
+        } finally {
+            OrchestratorClientConfig.CALL_TIMEOUT.remove();
+        }
+    }
+
+    // Lines are {"event": "location" | "summary" | "error", ...}
+    private DnsLookupResponse readStream(InputStream body, DnsLookupRequest request,
+                                         LocationResultListener listener) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            JsonNode event = objectMapper.readTree(line);
+            switch (event.path("event").asText()) {
+                case "location" -> listener.onLocationResult(
+                    event.path("location").asText("unknown"),
+                    objectMapper.convertValue(event.path("result"), MAP_TYPE));
+                case "summary" -> {
+                    return objectMapper.treeToValue(event.path("response"), DnsLookupResponse.class);
+                }
+                case "error" -> {
+                    return new DnsLookupResponse(request.getDomain(), "error", null,
+                                                 event.path("message").asText());
+                }
+                default -> logger.warn("Ignoring unknown orchestrator stream event: {}", line);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> toRequestBody(DnsLookupRequest request) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("domain", request.getDomain());
+        requestBody.put("locations", request.getLocations());
+        requestBody.put("record_types", request.getRecordTypes());
+        // The orchestrator returns whatever results it has when this runs out
+        Duration budget = lookupDeadlines.upstreamBudget(request);
+        if (budget != null) {
+            requestBody.put("timeout_seconds", Math.max(0.001, budget.toMillis() / 1000.0));
         }
+        return requestBody;
     }
 }
@@ -0,0 +1,191 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.cache.CachedCells;
+import com.oteldemo.gateway.cache.LookupResultCache;
+import com.oteldemo.gateway.cache.NegativeLookupCache;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link DnsLookupService}: same cache and
+ * coalescing, but the orchestrator call never holds a thread while waiting.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveDnsLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveDnsLookupService.class);
+
+    @Autowired
+    private ReactiveOrchestratorService reactiveOrchestratorService;
+
+    @Autowired
+    private LookupResultCache lookupResultCache;
+
+    @Autowired
+    private LookupCoalescer lookupCoalescer;
+
+    @Autowired
+    private NegativeLookupCache negativeLookupCache;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Autowired
+    private UpstreamCircuitBreaker circuitBreaker;
+
+    @Value("${gateway.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${gateway.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    public Mono<DnsLookupResponse> lookup(DnsLookupRequest request) {
+        if (!cacheEnabled) {
+            return coalesced(request).map(response -> recordIfNegative(request, response));
+        }
+
+        CachedCells cached = lookupResultCache.lookup(request);
+        Span.current().setAttribute("cache.hit", cached.isComplete());
+        if (cached.isComplete()) {
+            if (cached.isStale()) {
+                logger.info("Serving stale DNS lookup for {} while revalidating", request.getDomain());
+                Span.current().setAttribute("cache.stale", true);
+                if (cached.hasClaimed()) {
+                    // Nobody waits on a refresh, so it yields to live traffic and has no deadline
+                    List<DnsLookupRequest> refreshes = cached.refreshRequests(request);
+                    refreshes.forEach(refresh -> {
+                        refresh.setPriority(LookupPriority.BULK);
+                        refresh.setDeadlineNanos(null);
+                    });
+                    fetchAll(refreshes)
+                        .doFinally(signal -> lookupResultCache.refreshFinished(cached))
+                        .subscribe(
+                            responses -> logger.info("Revalidated DNS lookup for {}", request.getDomain()),
+                            e -> logger.warn("Revalidating DNS lookup for {} failed: {}",
+                                             request.getDomain(), e.getMessage()));
+                }
+            } else {
+                logger.info("Serving DNS lookup for {} from cache", request.getDomain());
+            }
+            return Mono.just(cached.merge(request, List.of()));
+        }
+
+        if (negativeLookupCache.isEnabled() && negativeLookupCache.mightBeNegative(request.getDomain())) {
+            logger.info("Serving DNS lookup for {} from negative cache", request.getDomain());
+            Span.current().setAttribute("cache.negative", true);
+            lookupResultCache.refreshFinished(cached);
+            return Mono.just(NegativeLookupCache.negativeResponse(request));
+        }
+
+        return fetchAll(cached.upstreamRequests(request))
+            .map(responses -> staleIfFailed(request, recordIfNegative(request, cached.merge(request, responses))))
+            .onErrorResume(ConcurrencyLimitExceededException.class, e -> staleIfRejected(request, e))
+            .doFinally(signal -> lookupResultCache.refreshFinished(cached));
+    }
+
+    private Mono<List<DnsLookupResponse>> fetchAll(List<DnsLookupRequest> requests) {
+        return Flux.fromIterable(requests)
+            .flatMapSequential(this::coalesced)
+            .collectList();
+    }
+
+    private Mono<DnsLookupResponse> coalesced(DnsLookupRequest request) {
+        if (coalescingEnabled) {
+            return lookupCoalescer.executeAsync(request, () -> fetch(request));
+        }
+        return fetch(request);
+    }
+
+    // Upstream errors and timeouts fall back to expired answers within max-stale, if all cells have one
+    private DnsLookupResponse staleIfFailed(DnsLookupRequest request, DnsLookupResponse response) {
+        if (!"error".equals(response.getStatus()) && !"timeout".equals(response.getStatus())) {
+            return response;
+        }
+
+        CachedCells stale = lookupResultCache.lookupStale(request);
+        if (!stale.isComplete()) {
+            return response;
+        }
+
+        logger.warn("Upstream lookup for {} failed ({}), serving stale cache entry",
+                    response.getDomain(), response.getMessage());
+        return stale.merge(request, List.of());
+    }
+
+    // Overloaded upstream: an expired answer beats a rejection
+    private Mono<DnsLookupResponse> staleIfRejected(DnsLookupRequest request, ConcurrencyLimitExceededException e) {
+        CachedCells stale = lookupResultCache.lookupStale(request);
+        if (!stale.isComplete()) {
+            return Mono.error(e);
+        }
+        logger.warn("Upstream concurrency limit reached, serving stale cache entry for {}", request.getDomain());
+        return Mono.just(stale.merge(request, List.of()));
+    }
+
+    private DnsLookupResponse recordIfNegative(DnsLookupRequest request, DnsLookupResponse response) {
+        if (negativeLookupCache.isEnabled() && NegativeLookupCache.isNonExistent(response)) {
+            negativeLookupCache.record(request.getDomain());
+        }
+        return response;
+    }
+
+    private Mono<DnsLookupResponse> fetch(DnsLookupRequest request) {
+        return Mono.defer(() -> {
+            if (lookupDeadlines.isExpired(request)) {
+                // Cells already cached still make a partial answer
+                return Mono.just(LookupDeadlines.deadlineExceeded(request));
+            }
+            UpstreamCircuitBreaker.Call call = circuitBreaker.tryAcquire();
+            if (call == null) {
+                logger.warn("Upstream circuit breaker open, failing fast for {}", request.getDomain());
+                return Mono.just(UpstreamCircuitBreaker.openResponse(request));
+            }
+            AdaptiveConcurrencyLimiter.Permit permit;
+            try {
+                permit = concurrencyLimiter.tryAcquire(request.getPriority());
+            } catch (ConcurrencyLimitExceededException e) {
+                call.ignored();
+                throw e;
+            }
+            return reactiveOrchestratorService.submitDnsLookup(request)
+                .doOnNext(response -> {
+                    // Cut short by the caller's deadline: says nothing about the upstream
+                    if (lookupDeadlines.isExpired(request)) {
+                        permit.released();
+                        call.ignored();
+                    } else {
+                        permit.complete(response);
+                        call.complete(response);
+                    }
+                })
+                .doOnError(e -> call.failed())
+                // Errors, cancellation or no answer at all; no-op once completed
+                .doFinally(signal -> {
+                    permit.dropped();
+                    call.ignored();
+                });
+        })
+            .doOnNext(response -> {
+                // Error-free answers are kept per cell, even from partial responses
+                if (cacheEnabled) {
+                    lookupResultCache.put(request, response);
+                }
+            });
+    }
+}
@@ -0,0 +1,191 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking counterpart of {@link OrchestratorService} used by the WebFlux
+ * variant, with the same rotation over orchestrator.urls and hedging. Trace
+ * context is propagated by the Java agent's WebClient and Reactor
+ * instrumentation, the same way it is for RestTemplate.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveOrchestratorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveOrchestratorService.class);
+
+    private static final String ORCHESTRATE_PATH = "/api/v1/dns/orchestrate";
+
+    @Autowired
+    private WebClient orchestratorWebClient;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Autowired
+    private OrchestratorHedging hedging;
+
+    // Orchestrator instances, comma-separated; calls rotate over them and hedges go to the next one
+    @Value("${orchestrator.urls:${orchestrator.url:http://orchestrator:8001}}")
+    private List<String> orchestratorUrls;
+
+    private final AtomicInteger nextInstance = new AtomicInteger();
+
+    private boolean hedged;
+
+    private record Answer(DnsLookupResponse response, boolean hedge) {
+    }
+
+    @PostConstruct
+    void init() {
+        // A hedge to the same instance would only double its load
+        hedged = hedging.isEnabled() && orchestratorUrls.size() >= 2;
+        if (hedging.isEnabled() && !hedged) {
+            logger.warn("Hedging is enabled but only one orchestrator URL is configured ({}); not hedging",
+                        orchestratorUrls);
+        }
+    }
+
+    public Mono<DnsLookupResponse> submitDnsLookup(DnsLookupRequest request) {
+        return Mono.defer(() -> {
+            int instance = Math.floorMod(nextInstance.getAndIncrement(), orchestratorUrls.size());
+            if (!hedged) {
+                return post(orchestratorUrls.get(instance), request);
+            }
+            return submitHedged(request, instance);
+        });
+    }
+
+    /**
+     * Send the lookup to one instance and, if it has not answered within the
+     * hedge delay and the hedge budget allows, a copy to the next instance.
+     * The first useful answer wins and the other call is cancelled. An error
+     * answer only wins if there is nothing left to wait for.
+     */
+    private Mono<DnsLookupResponse> submitHedged(DnsLookupRequest request, int instance) {
+        hedging.onCall();
+        Span currentSpan = Span.current();
+        Duration delay = hedging.delay();
+        AtomicBoolean answered = new AtomicBoolean();
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+
+        Mono<Answer> primary = post(orchestratorUrls.get(instance), request)
+            .doOnNext(response -> answered.set(true))
+            .map(response -> new Answer(response, false));
+        Mono<Answer> hedge = Mono.delay(delay)
+            .filter(tick -> !answered.get() && !lookupDeadlines.isExpired(request) && hedging.tryHedge())
+            .flatMap(tick -> {
+                String hedgeUrl = orchestratorUrls.get((instance + 1) % orchestratorUrls.size());
+                logger.info("No orchestrator answer for {} after {} ms, hedging to {}",
+                            request.getDomain(), delay.toMillis(), hedgeUrl);
+                currentSpan.setAttribute("orchestrator.hedged", true);
+                hedgeSent.set(true);
+                return post(hedgeUrl, request).map(response -> new Answer(response, true));
+            });
+
+        return Flux.merge(primary, hedge)
+            .takeUntil(answer -> !"error".equals(answer.response().getStatus()))
+            .last()
+            .doOnNext(answer -> {
+                if (hedgeSent.get()) {
+                    currentSpan.setAttribute("orchestrator.hedge_winner", answer.hedge() ? "hedge" : "primary");
+                    hedging.recordWinner(answer.hedge());
+                }
+            })
+            .map(Answer::response);
+    }
+
+    private Mono<DnsLookupResponse> post(String baseUrl, DnsLookupRequest request) {
+        String url = baseUrl + ORCHESTRATE_PATH;
+
+        logger.info("Forwarding DNS lookup to orchestrator: {}", url);
+
+        Span currentSpan = Span.current();
+        currentSpan.setAttribute("orchestrator.url", url);
+
+        // Prepare request body (trace context propagated via HTTP headers automatically)
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("domain", request.getDomain());
+        requestBody.put("locations", request.getLocations());
+        requestBody.put("record_types", request.getRecordTypes());
+        // The orchestrator returns whatever results it has when this runs out
+        Duration budget = lookupDeadlines.upstreamBudget(request);
+        if (budget != null) {
+            requestBody.put("timeout_seconds", Math.max(0.001, budget.toMillis() / 1000.0));
+        }
+
+        Mono<DnsLookupResponse> call = orchestratorWebClient.post()
+            .uri(url)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(requestBody)
+            .retrieve()
+            .bodyToMono(DnsLookupResponse.class);
+        // Stop waiting once the caller's deadline has passed
+        Duration remaining = lookupDeadlines.remaining(request);
+        if (remaining != null) {
+            call = call.timeout(remaining.isPositive() ? remaining : Duration.ZERO);
+        }
+
+        long startNanos = System.nanoTime();
+        return call
+            .doOnNext(response -> {
+                logger.info("Successfully received response from orchestrator");
+                hedging.recordLatency(System.nanoTime() - startNanos);
+            })
+            .switchIfEmpty(Mono.fromSupplier(() -> new DnsLookupResponse(
+                request.getDomain(),
+                "error",
+                null,
+                "Orchestrator returned an empty response"
+            )))
+            .onErrorResume(TimeoutException.class, e -> {
+                logger.warn("Deadline for {} passed waiting for orchestrator", request.getDomain());
+                currentSpan.setAttribute("deadline.exceeded", true);
+                return Mono.just(LookupDeadlines.deadlineExceeded(request));
+            })
+            .onErrorResume(WebClientResponseException.class, e -> {
+                logger.warn("Orchestrator returned non-success status: {}", e.getStatusCode());
+                return Mono.just(new DnsLookupResponse(
+                    request.getDomain(),
+                    "error",
+                    null,
+                    "Orchestrator returned status: " + e.getStatusCode()
+                ));
+            })
+            .onErrorResume(e -> {
+                logger.error("Error communicating with orchestrator: {}", e.getMessage(), e);
+                currentSpan.recordException(e);
+                currentSpan.setStatus(StatusCode.ERROR, "Failed to communicate with orchestrator");
+
+                return Mono.just(new DnsLookupResponse(
+                    request.getDomain(),
+                    "error",
+                    null,
+                    "Failed to communicate with orchestrator: " + e.getMessage()
+                ));
+            });
+    }
+}
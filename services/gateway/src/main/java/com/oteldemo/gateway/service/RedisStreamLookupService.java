@@ -0,0 +1,298 @@
+package com.oteldemo.gateway.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend for gateway.backend=redis: publishes tasks to dns:tasks in the same
+ * shape the orchestrator uses and collects worker results from dns:results,
+ * skipping the orchestrator HTTP hop.
+ *
+ * Results are read by one long-lived XREAD loop (no consumer group, so nothing
+ * is created or destroyed per request) and handed to the waiting lookup by the
+ * task id the workers echo back. Results for tasks this instance did not
+ * publish are ignored. The aggregated response matches the orchestrator's.
+ */
+@Service
+@ConditionalOnProperty(name = "gateway.backend", havingValue = "redis")
+public class RedisStreamLookupService implements LookupBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisStreamLookupService.class);
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private RedisClient redisClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LookupDeadlines lookupDeadlines;
+
+    @Value("${gateway.redis.tasks-stream:dns:tasks}")
+    private String tasksStream;
+
+    @Value("${gateway.redis.results-stream:dns:results}")
+    private String resultsStream;
+
+    @Value("${gateway.redis.result-timeout:10s}")
+    private Duration resultTimeout;
+
+    private final Map<String, BlockingQueue<Map<String, Object>>> waiting = new ConcurrentHashMap<>();
+
+    private StatefulRedisConnection<String, String> publishConnection;
+    private StatefulRedisConnection<String, String> readerConnection;
+    private Thread reader;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    void start() {
+        publishConnection = redisClient.connect();
+        // XREAD BLOCK holds its connection, so the reader gets its own
+        readerConnection = redisClient.connect();
+
+        reader = Thread.ofPlatform().name("redis-results-reader").daemon().start(this::readResults);
+        logger.info("Publishing DNS tasks to {} and reading results from {}", tasksStream, resultsStream);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        reader.join(Duration.ofSeconds(2));
+        readerConnection.close();
+        publishConnection.close();
+    }
+
+    @Override
+    public DnsLookupResponse submitDnsLookup(DnsLookupRequest request) {
+        return streamDnsLookup(request, (location, result) -> {
+        });
+    }
+
+    @Override
+    public DnsLookupResponse streamDnsLookup(DnsLookupRequest request, LocationResultListener listener) {
+        Span currentSpan = Span.current();
+        String traceId = currentSpan.getSpanContext().getTraceId();
+
+        // A single trace can carry many lookups (e.g. batch requests), so results
+        // are matched on a per-task id rather than the trace_id
+        String taskId = UUID.randomUUID().toString().replace("-", "");
+        currentSpan.setAttribute("task.id", taskId);
+        currentSpan.setAttribute("redis.stream", tasksStream);
+
+        int expected = request.getLocations().size();
+        BlockingQueue<Map<String, Object>> results = new LinkedBlockingQueue<>();
+        waiting.put(taskId, results);
+
+        try {
+            publishTask(request, traceId, taskId);
+            logger.info("Published task {} - expecting {} worker responses", taskId, expected);
+
+            List<Map<String, Object>> received = new ArrayList<>(expected);
+            // Results that arrive by the caller's deadline make a partial answer
+            Duration wait = resultTimeout;
+            Duration remaining = lookupDeadlines.remaining(request);
+            if (remaining != null && remaining.compareTo(wait) < 0) {
+                wait = remaining;
+            }
+            long deadline = System.nanoTime() + wait.toNanos();
+            while (received.size() < expected) {
+                Map<String, Object> result = results.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (result == null) {
+                    logger.warn("Timeout waiting for results. Got {}/{}", received.size(), expected);
+                    break;
+                }
+                // One result per requested location (older workers answer every task)
+                Object location = result.get("location");
+                if (!request.getLocations().contains(String.valueOf(location))
+                        || received.stream().anyMatch(r -> Objects.equals(r.get("location"), location))) {
+                    continue;
+                }
+                received.add(result);
+                logger.info("Received result {}/{}", received.size(), expected);
+                listener.onLocationResult(String.valueOf(result.getOrDefault("location", "unknown")),
+                                          locationEntry(result));
+            }
+
+            currentSpan.setAttribute("results.count", received.size());
+            return toResponse(request, received);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DnsLookupResponse(request.getDomain(), "error", null, "Interrupted waiting for workers");
+        } catch (StreamAbortedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error publishing DNS task to Redis: {}", e.getMessage(), e);
+            currentSpan.recordException(e);
+            currentSpan.setStatus(StatusCode.ERROR, "Failed to publish DNS task");
+
+            return new DnsLookupResponse(
+                request.getDomain(),
+                "error",
+                null,
+                "Failed to publish DNS task: " + e.getMessage()
+            );
+        } finally {
+            waiting.remove(taskId);
+        }
+    }
+
+    private void publishTask(DnsLookupRequest request, String traceId, String taskId) throws Exception {
+        // Workers continue the trace from the W3C context carried in the message
+        Map<String, String> traceContext = new HashMap<>();
+        GlobalOpenTelemetry.getPropagators().getTextMapPropagator()
+            .inject(Context.current(), traceContext, Map::put);
+
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("trace_id", traceId);
+        task.put("task_id", taskId);
+        task.put("domain", request.getDomain());
+        task.put("location", "");  // No specific location - all workers process it
+        task.put("locations", request.getLocations());  // ...but only the requested locations answer
+        task.put("record_types", request.getRecordTypes());
+        task.put("timestamp", LocalDateTime.now(ZoneOffset.UTC).toString());
+        task.put("trace_context", traceContext);
+
+        publishConnection.sync().xadd(tasksStream, Map.of("data", objectMapper.writeValueAsString(task)));
+    }
+
+    private void readResults() {
+        RedisCommands<String, String> commands = readerConnection.sync();
+        String lastId = null;
+
+        while (running) {
+            try {
+                if (lastId == null) {
+                    // Start after the newest existing entry; "$" on every call would skip
+                    // results written between two reads
+                    List<StreamMessage<String, String>> newest =
+                        commands.xrevrange(resultsStream, Range.create("-", "+"), Limit.from(1));
+                    lastId = newest.isEmpty() ? "0-0" : newest.get(0).getId();
+                }
+
+                List<StreamMessage<String, String>> messages = readAfter(commands, lastId);
+                for (StreamMessage<String, String> message : messages) {
+                    lastId = message.getId();
+                    dispatch(message.getBody().get("data"));
+                }
+            } catch (Exception e) {
+                if (running) {
+                    logger.error("Error reading results from {}: {}", resultsStream, e.getMessage());
+                    sleepQuietly();
+                }
+            }
+        }
+    }
+
+    // xread takes StreamOffset<K>... and Lettuce does not mark it @SafeVarargs; a single
+    // offset array is created and only read, so the unchecked generic array is safe
+    @SuppressWarnings("unchecked")
+    private List<StreamMessage<String, String>> readAfter(RedisCommands<String, String> commands, String lastId) {
+        return commands.xread(XReadArgs.Builder.block(1000).count(100),
+                              XReadArgs.StreamOffset.from(resultsStream, lastId));
+    }
+
+    private void dispatch(String data) {
+        if (data == null) {
+            return;
+        }
+        try {
+            Map<String, Object> result = objectMapper.readValue(data, MAP_TYPE);
+            BlockingQueue<Map<String, Object>> results = waiting.get(String.valueOf(result.get("task_id")));
+            if (results != null) {
+                results.add(result);
+            }
+        } catch (Exception e) {
+            logger.error("Error processing result message: {}", e.getMessage());
+        }
+    }
+
+    private static DnsLookupResponse toResponse(DnsLookupRequest request, List<Map<String, Object>> results) {
+        Map<String, Object> byLocation = new LinkedHashMap<>();
+        int successful = 0;
+        for (Map<String, Object> result : results) {
+            byLocation.put(String.valueOf(result.getOrDefault("location", "unknown")), locationEntry(result));
+            if ("success".equals(result.get("status"))) {
+                successful++;
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("total_locations", results.size());
+        summary.put("successful", successful);
+        summary.put("failed", results.size() - successful);
+
+        Map<String, Object> aggregated = new LinkedHashMap<>();
+        aggregated.put("by_location", byLocation);
+        aggregated.put("summary", summary);
+
+        // Same status semantics as the orchestrator
+        int expected = request.getLocations().size();
+        if (results.isEmpty()) {
+            return new DnsLookupResponse(request.getDomain(), "timeout", aggregated,
+                                         "No results received from workers");
+        }
+        if (results.size() < expected) {
+            return new DnsLookupResponse(request.getDomain(), "partial", aggregated,
+                "Received " + results.size() + "/" + expected + " results from worker locations");
+        }
+        return new DnsLookupResponse(request.getDomain(), "success", aggregated,
+            "Successfully received results from all " + results.size() + " worker locations");
+    }
+
+    private static Map<String, Object> locationEntry(Map<String, Object> result) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("status", result.getOrDefault("status", "unknown"));
+        entry.put("records", result.getOrDefault("records", Map.of()));
+        entry.put("error", result.get("error"));
+        entry.put("processing_time_ms", result.getOrDefault("processing_time_ms", 0));
+        return entry;
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.oteldemo.gateway.service;
+
+/**
+ * Thrown out of a streamed lookup when its {@link LocationResultListener}
+ * gave up, typically because the client went away. It says nothing about
+ * the upstream, so backends pass it on instead of turning it into an error
+ * response, and it does not count against the circuit breaker or limiter.
+ */
+public class StreamAbortedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StreamAbortedException(RuntimeException cause) {
+        super("Stream listener aborted: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,307 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stops calling the upstream while it is failing, so lookups fail fast (and
+ * fall back to stale cache entries) instead of each waiting out a timeout.
+ *
+ * Closed, it keeps call outcomes over a rolling window of one-second buckets
+ * and opens once the window holds minimum-calls and either the failure rate
+ * or the rate of calls slower than slow-call-threshold reaches its threshold.
+ * Open, it rejects every call for wait-in-open, then goes half-open and lets
+ * half-open-calls probes through: all succeeding closes it, any failing or
+ * slow probe opens it again. State changes are logged, counted and added as
+ * events to the span of the call that caused them.
+ */
+@Component
+public class UpstreamCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamCircuitBreaker.class);
+
+    private static final AttributeKey<String> FROM = AttributeKey.stringKey("circuit_breaker.from");
+    private static final AttributeKey<String> TO = AttributeKey.stringKey("circuit_breaker.to");
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gateway.circuit-breaker.window:10s}")
+    private Duration window;
+
+    @Value("${gateway.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${gateway.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${gateway.circuit-breaker.slow-call-threshold:5s}")
+    private Duration slowCallThreshold;
+
+    @Value("${gateway.circuit-breaker.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${gateway.circuit-breaker.wait-in-open:10s}")
+    private Duration waitInOpen;
+
+    @Value("${gateway.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock; state is also read without it
+    private volatile State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long[] bucketSecond;
+    private int[] calls;
+    private int[] failures;
+    private int[] slowCalls;
+
+    private Counter rejections;
+    private final Map<State, Map<State, Counter>> transitions = new EnumMap<>(State.class);
+
+    @PostConstruct
+    void init() {
+        int buckets = (int) Math.max(1, window.toSeconds());
+        bucketSecond = new long[buckets];
+        calls = new int[buckets];
+        failures = new int[buckets];
+        slowCalls = new int[buckets];
+
+        for (State gaugeState : State.values()) {
+            Gauge.builder("gateway.circuit_breaker.state", this, breaker -> breaker.state == gaugeState ? 1 : 0)
+                .tag("state", tag(gaugeState)).description("Upstream circuit breaker state (1 = current)")
+                .register(meterRegistry);
+        }
+        Gauge.builder("gateway.circuit_breaker.failure_rate", this, breaker -> breaker.rate(breaker.failures))
+            .description("Share of failed upstream calls in the rolling window").register(meterRegistry);
+        Gauge.builder("gateway.circuit_breaker.slow_call_rate", this, breaker -> breaker.rate(breaker.slowCalls))
+            .description("Share of slow upstream calls in the rolling window").register(meterRegistry);
+        rejections = Counter.builder("gateway.circuit_breaker.rejections")
+            .description("Upstream calls not made because the circuit breaker was open").register(meterRegistry);
+        for (State from : State.values()) {
+            Map<State, Counter> byTarget = new EnumMap<>(State.class);
+            for (State to : State.values()) {
+                if (from != to) {
+                    byTarget.put(to, Counter.builder("gateway.circuit_breaker.transitions")
+                        .tag("from", tag(from)).tag("to", tag(to))
+                        .description("Upstream circuit breaker state changes").register(meterRegistry));
+                }
+            }
+            transitions.put(from, byTarget);
+        }
+    }
+
+    /**
+     * Ask to make one upstream call. Returns null if the breaker rejects it;
+     * otherwise the call's outcome must be reported exactly once. When disabled
+     * every call is allowed and nothing is recorded.
+     */
+    public Call tryAcquire() {
+        if (!enabled) {
+            return new Call(false, false);
+        }
+
+        lock.lock();
+        try {
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= waitInOpen.toNanos()) {
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.CLOSED) {
+                return new Call(true, false);
+            }
+            if (state == State.HALF_OPEN && probesStarted < halfOpenCalls) {
+                probesStarted++;
+                return new Call(true, true);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        rejections.increment();
+        Span.current().setAttribute("circuit_breaker.rejected", true);
+        return null;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * The response for a lookup rejected while the breaker is open.
+     */
+    public static DnsLookupResponse openResponse(DnsLookupRequest request) {
+        return new DnsLookupResponse(request.getDomain(), "error", null,
+                                     "Orchestrator unavailable (circuit breaker open), failing fast");
+    }
+
+    /**
+     * One upstream call let through by the breaker.
+     */
+    public final class Call {
+        private final long startNanos = System.nanoTime();
+        private final boolean recorded;
+        private final boolean probe;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Call(boolean recorded, boolean probe) {
+            this.recorded = recorded;
+            this.probe = probe;
+        }
+
+        /** The upstream answered; error and timeout statuses count as failures. */
+        public void complete(DnsLookupResponse response) {
+            finish(true, "error".equals(response.getStatus()) || "timeout".equals(response.getStatus()));
+        }
+
+        /** The upstream call failed outright. */
+        public void failed() {
+            finish(true, true);
+        }
+
+        /** The call never reached the upstream or was cut short by the caller; not counted. */
+        public void ignored() {
+            finish(false, false);
+        }
+
+        private void finish(boolean counted, boolean failed) {
+            if (!recorded || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            lock.lock();
+            try {
+                if (probe) {
+                    probeFinished(counted, failed, elapsed >= slowCallThreshold.toNanos());
+                } else if (counted && state == State.CLOSED) {
+                    record(failed, elapsed >= slowCallThreshold.toNanos());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Callers hold the lock for the helpers below
+
+    private void probeFinished(boolean counted, boolean failed, boolean slow) {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        if (!counted) {
+            // Let another probe take its place
+            probesStarted--;
+        } else if (failed || slow) {
+            transition(State.OPEN);
+        } else if (++probesSucceeded >= halfOpenCalls) {
+            transition(State.CLOSED);
+        }
+    }
+
+    private void record(boolean failed, boolean slow) {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        int bucket = Math.floorMod(second, calls.length);
+        if (bucketSecond[bucket] != second) {
+            bucketSecond[bucket] = second;
+            calls[bucket] = 0;
+            failures[bucket] = 0;
+            slowCalls[bucket] = 0;
+        }
+        calls[bucket]++;
+        if (failed) {
+            failures[bucket]++;
+        }
+        if (slow) {
+            slowCalls[bucket]++;
+        }
+
+        int total = sum(calls, second);
+        if (total < minimumCalls) {
+            return;
+        }
+        double failureRate = (double) sum(failures, second) / total;
+        double slowCallRate = (double) sum(slowCalls, second) / total;
+        if (failureRate >= failureRateThreshold || slowCallRate >= slowCallRateThreshold) {
+            logger.warn("Opening upstream circuit breaker: failure rate {}, slow call rate {} over {} calls",
+                        String.format(Locale.ROOT, "%.2f", failureRate),
+                        String.format(Locale.ROOT, "%.2f", slowCallRate), total);
+            transition(State.OPEN);
+        }
+    }
+
+    // Sum over the buckets still inside the window
+    private int sum(int[] counts, long now) {
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (now - bucketSecond[i] < counts.length) {
+                total += counts[i];
+            }
+        }
+        return total;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (to == State.OPEN) {
+            openedAtNanos = System.nanoTime();
+        }
+        if (to == State.CLOSED) {
+            // Start afresh rather than reopen on the outcomes that opened it
+            Arrays.fill(calls, 0);
+            Arrays.fill(failures, 0);
+            Arrays.fill(slowCalls, 0);
+        }
+
+        logger.info("Upstream circuit breaker {} -> {}", tag(from), tag(to));
+        transitions.get(from).get(to).increment();
+        Span.current().addEvent("circuit_breaker.state_change", Attributes.of(FROM, tag(from), TO, tag(to)));
+    }
+
+    private double rate(int[] counts) {
+        lock.lock();
+        try {
+            long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            int total = sum(calls, second);
+            return total == 0 ? 0 : (double) sum(counts, second) / total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String tag(State state) {
+        return state.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,45 @@
+package com.oteldemo.gateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void containsEveryAddedValue() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("domain-" + i + ".example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("domain-" + i + ".example.com")).isTrue();
+        }
+        assertThat(filter.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("added-" + i + ".example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent-" + i + ".example.com")) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+        assertThat(filter.mightContain("example.com")).isFalse();
+        assertThat(filter.sizeInBytes()).isPositive();
+    }
+}
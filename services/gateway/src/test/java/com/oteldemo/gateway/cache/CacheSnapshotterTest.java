@@ -0,0 +1,166 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheSnapshotterTest {
+
+    // Three segments of up to 1024 entries
+    private static final int ENTRIES = 2500;
+
+    @TempDir
+    Path tempDir;
+
+    private Path snapshot;
+    private final List<CacheSnapshotter> snapshotters = new ArrayList<>();
+    private final Queue<LookupResultCache.SnapshotEntry> restored = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        snapshot = tempDir.resolve("lookup-cache.snapshot");
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Shutting down writes a snapshot, so point it at a scratch file
+        snapshotters.forEach(snapshotter -> {
+            ReflectionTestUtils.setField(snapshotter, "path", tempDir.resolve("shutdown.snapshot"));
+            snapshotter.shutdown();
+        });
+    }
+
+    @Test
+    void restoresWhatWasWritten() throws IOException {
+        List<LookupResultCache.SnapshotEntry> entries = entries(System.currentTimeMillis() + 60_000);
+
+        assertThat(writer(entries).write()).isEqualTo(ENTRIES);
+        reader();
+
+        assertThat(restored).containsExactlyInAnyOrderElementsOf(entries);
+    }
+
+    @Test
+    void dropsEntriesThatExpiredInTheMeantime() throws IOException {
+        long now = System.currentTimeMillis();
+        List<LookupResultCache.SnapshotEntry> entries = new ArrayList<>(entries(now + 60_000));
+        entries.set(0, new LookupResultCache.SnapshotEntry("expired|us-east-1|A", now - 1, record(0)));
+
+        writer(entries).write();
+        reader();
+
+        assertThat(restored).hasSize(ENTRIES - 1)
+            .noneMatch(entry -> entry.key().startsWith("expired"));
+    }
+
+    @Test
+    void skipsACorruptSegmentAndKeepsTheRest() throws IOException {
+        List<LookupResultCache.SnapshotEntry> entries = entries(System.currentTimeMillis() + 60_000);
+        writer(entries).write();
+
+        // Flip a byte in the body of the second segment
+        int secondSegment = 8 + 12 + readInt(8 + 4);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[secondSegment + 12 + 100] ^= 0x5A;
+        Files.write(snapshot, bytes);
+        reader();
+
+        assertThat(restored).hasSize(ENTRIES - 1024)
+            .containsAll(entries.subList(0, 1024))
+            .containsAll(entries.subList(2048, ENTRIES));
+    }
+
+    @Test
+    void loadsTheCompleteSegmentsOfATruncatedFile() throws IOException {
+        List<LookupResultCache.SnapshotEntry> entries = entries(System.currentTimeMillis() + 60_000);
+        writer(entries).write();
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        reader();
+
+        assertThat(restored).containsExactlyInAnyOrderElementsOf(entries.subList(0, 2048));
+    }
+
+    @Test
+    void ignoresAFileWithAnUnknownFormat() throws IOException {
+        Files.write(snapshot, "not a snapshot at all".getBytes());
+        reader();
+
+        assertThat(restored).isEmpty();
+    }
+
+    private CacheSnapshotter writer(List<LookupResultCache.SnapshotEntry> entries) {
+        LookupResultCache cache = mock(LookupResultCache.class);
+        when(cache.keys()).thenReturn(entries.stream().map(LookupResultCache.SnapshotEntry::key).toList());
+        when(cache.export(anyList())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(0);
+            return entries.stream().filter(entry -> keys.contains(entry.key())).toList();
+        });
+        return snapshotter(cache);
+    }
+
+    private void reader() {
+        LookupResultCache cache = mock(LookupResultCache.class);
+        when(cache.restore(anyList())).thenAnswer(invocation -> {
+            List<LookupResultCache.SnapshotEntry> live = invocation.getArgument(0);
+            restored.addAll(live);
+            return live.size();
+        });
+        // Restores on init
+        snapshotter(cache);
+    }
+
+    private CacheSnapshotter snapshotter(LookupResultCache cache) {
+        CacheSnapshotter snapshotter = new CacheSnapshotter();
+        ReflectionTestUtils.setField(snapshotter, "lookupResultCache", cache);
+        ReflectionTestUtils.setField(snapshotter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(snapshotter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(snapshotter, "cacheEnabled", true);
+        ReflectionTestUtils.setField(snapshotter, "snapshotPath", snapshot.toString());
+        ReflectionTestUtils.setField(snapshotter, "interval", Duration.ofHours(1));
+        snapshotter.init();
+        snapshotters.add(snapshotter);
+        return snapshotter;
+    }
+
+    private int readInt(int offset) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(snapshot)).getInt(offset);
+    }
+
+    private static List<LookupResultCache.SnapshotEntry> entries(long expiresAtMillis) {
+        List<LookupResultCache.SnapshotEntry> entries = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            entries.add(new LookupResultCache.SnapshotEntry("domain-" + i + ".example.com|us-east-1|A",
+                                                            expiresAtMillis, record(i)));
+        }
+        return entries;
+    }
+
+    private static Map<String, Object> record(int i) {
+        return Map.of("record_type", "A", "records", List.of("10.0.0." + (i % 256)), "ttl", 300);
+    }
+}
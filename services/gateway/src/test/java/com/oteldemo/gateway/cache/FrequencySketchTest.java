@@ -0,0 +1,45 @@
+package com.oteldemo.gateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsIncrementsPerKey() {
+        FrequencySketch sketch = new FrequencySketch(1_000);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("hot.example.com");
+        }
+        sketch.increment("cold.example.com");
+
+        assertThat(sketch.frequency("hot.example.com")).isEqualTo(5);
+        assertThat(sketch.frequency("cold.example.com")).isEqualTo(1);
+        assertThat(sketch.frequency("unseen.example.com")).isZero();
+    }
+
+    @Test
+    void countersSaturateAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1_000);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("example.com");
+        }
+
+        assertThat(sketch.frequency("example.com")).isEqualTo(15);
+    }
+
+    @Test
+    void halvesCountersOnceTheSampleIsFull() {
+        // Capacity 1 gives a sample size of 10 additions
+        FrequencySketch sketch = new FrequencySketch(1);
+        for (int i = 0; i < 9; i++) {
+            sketch.increment("example.com");
+        }
+        assertThat(sketch.frequency("example.com")).isEqualTo(9);
+
+        sketch.increment("example.com");
+
+        assertThat(sketch.frequency("example.com")).isEqualTo(5);
+    }
+}
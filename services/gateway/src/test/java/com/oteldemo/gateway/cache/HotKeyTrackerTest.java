@@ -0,0 +1,134 @@
+package com.oteldemo.gateway.cache;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.HotKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyTrackerTest {
+
+    @Test
+    void countsAreExactBelowCapacity() {
+        HotKeyTracker tracker = tracker(10, Duration.ofMinutes(1));
+        record(tracker, "a.example.com", 5);
+        record(tracker, "b.example.com", 3);
+        record(tracker, "c.example.com", 1);
+
+        List<HotKey> top = tracker.top(3);
+
+        assertThat(top).extracting(HotKey::getDomain)
+            .containsExactly("a.example.com", "b.example.com", "c.example.com");
+        assertThat(top).extracting(HotKey::getRequests).containsExactly(5L, 3L, 1L);
+        assertThat(top).extracting(HotKey::getError).containsOnly(0L);
+    }
+
+    @Test
+    void newDomainTakesOverTheLeastCountedCounter() {
+        HotKeyTracker tracker = tracker(2, Duration.ofMinutes(1));
+        record(tracker, "a.example.com", 3);
+        record(tracker, "b.example.com", 1);
+        record(tracker, "c.example.com", 1);
+
+        List<HotKey> top = tracker.top(10);
+
+        assertThat(top).extracting(HotKey::getDomain).containsExactly("a.example.com", "c.example.com");
+        assertThat(top.get(1).getRequests()).isEqualTo(2);
+        assertThat(top.get(1).getError()).isEqualTo(1);
+    }
+
+    @Test
+    void countsBoundTheTrueCountAndSumToAllRequests() {
+        int capacity = 20;
+        HotKeyTracker tracker = tracker(capacity, Duration.ofMinutes(1));
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(42);
+        int requests = 20_000;
+
+        // Skewed: low domain numbers are requested far more often
+        for (int i = 0; i < requests; i++) {
+            String domain = "host" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 200) + ".example.com";
+            tracker.record(request(domain));
+            actual.merge(domain, 1L, Long::sum);
+        }
+
+        List<HotKey> top = tracker.top(capacity);
+        assertThat(top).hasSize(capacity);
+        assertThat(top.stream().mapToLong(HotKey::getRequests).sum()).isEqualTo(requests);
+        for (HotKey key : top) {
+            long trueCount = actual.getOrDefault(key.getDomain(), 0L);
+            assertThat(trueCount).isBetween(key.getRequests() - key.getError(), key.getRequests());
+        }
+        // More than 1/capacity of all requests: guaranteed to be tracked
+        actual.forEach((domain, count) -> {
+            if (count > requests / capacity) {
+                assertThat(top).extracting(HotKey::getDomain).contains(domain);
+            }
+        });
+    }
+
+    @Test
+    void requestsForTheSameDomainAreMerged() {
+        HotKeyTracker tracker = tracker(10, Duration.ofMinutes(1));
+        DnsLookupRequest first = request("Example.com.");
+        first.setLocations(List.of("us-east-1"));
+        first.setRecordTypes(List.of("A"));
+        DnsLookupRequest second = request("example.com");
+        second.setLocations(List.of("eu-west-1"));
+        second.setRecordTypes(List.of("mx"));
+
+        tracker.record(first);
+        tracker.record(second);
+
+        HotKey key = tracker.top(1).get(0);
+        assertThat(key.getDomain()).isEqualTo("example.com");
+        assertThat(key.getRequests()).isEqualTo(2);
+        assertThat(key.getLocations()).containsExactly("us-east-1", "eu-west-1");
+        assertThat(key.getRecordTypes()).containsExactly("A", "MX");
+    }
+
+    @Test
+    void countsCoverTheCurrentAndPreviousWindowOnly() throws InterruptedException {
+        HotKeyTracker tracker = tracker(10, Duration.ofMillis(100));
+        record(tracker, "old.example.com", 3);
+        Thread.sleep(150);
+        record(tracker, "new.example.com", 1);
+
+        assertThat(tracker.top(10)).extracting(HotKey::getDomain)
+            .containsExactlyInAnyOrder("old.example.com", "new.example.com");
+
+        Thread.sleep(150);
+        tracker.top(10);
+        Thread.sleep(150);
+        assertThat(tracker.top(10)).isEmpty();
+    }
+
+    private static HotKeyTracker tracker(int capacity, Duration window) {
+        HotKeyTracker tracker = new HotKeyTracker();
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "capacity", capacity);
+        ReflectionTestUtils.setField(tracker, "window", window);
+        return tracker;
+    }
+
+    private static void record(HotKeyTracker tracker, String domain, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(request(domain));
+        }
+    }
+
+    private static DnsLookupRequest request(String domain) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain(domain);
+        request.setLocations(List.of("us-east-1"));
+        request.setRecordTypes(List.of("A"));
+        return request;
+    }
+}
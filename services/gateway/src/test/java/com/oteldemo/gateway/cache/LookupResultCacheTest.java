@@ -0,0 +1,214 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class LookupResultCacheTest {
+
+    @Test
+    void answersAreKeptPerCell() {
+        LookupResultCache cache = cache("heap");
+        cache.put(request("example.com"), response("192.0.2.1"));
+
+        CachedCells cells = cache.lookup(request("example.com"));
+
+        assertThat(cells.isComplete()).isTrue();
+        assertThat(cells.merge(request("example.com"), List.of()).getStatus()).isEqualTo("success");
+        assertThat(cache.lookup(request("other.example.com")).isComplete()).isFalse();
+    }
+
+    @Test
+    void domainsAndRecordTypesAreNormalized() {
+        LookupResultCache cache = cache("heap");
+        cache.put(request("Example.COM."), response("192.0.2.1"));
+
+        DnsLookupRequest lowerCaseType = request("example.com");
+        lowerCaseType.setRecordTypes(List.of(" a "));
+
+        assertThat(cache.lookup(lowerCaseType).isComplete()).isTrue();
+    }
+
+    @Test
+    void answersWithAnErrorAreNotCached() {
+        LookupResultCache cache = cache("heap");
+        Map<String, Object> failed = Map.of("record_type", "A", "records", List.of(), "error", "dig command failed");
+        Map<String, Object> location = Map.of("status", "failed", "records", Map.of("A", failed));
+
+        cache.put(request("example.com"), new DnsLookupResponse("example.com", "success",
+            Map.of("by_location", Map.of("us-east-1", location)), null));
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void onlyMissingCellsGoUpstream() {
+        LookupResultCache cache = cache("heap");
+        cache.put(request("example.com"), response("192.0.2.1"));
+
+        DnsLookupRequest both = request("example.com");
+        both.setRecordTypes(List.of("A", "AAAA"));
+        CachedCells cells = cache.lookup(both);
+
+        assertThat(cells.isComplete()).isFalse();
+        List<DnsLookupRequest> upstream = cells.upstreamRequests(both);
+        assertThat(upstream).hasSize(1);
+        assertThat(upstream.get(0).getRecordTypes()).containsExactly("AAAA");
+    }
+
+    @Test
+    void ttlFollowsTheRecordWithinBounds() {
+        LookupResultCache cache = cache("heap");
+
+        assertThat(cache.ttlFor(Map.of("ttl", 30))).isEqualTo(Duration.ofSeconds(30));
+        assertThat(cache.ttlFor(Map.of("ttl", 1))).isEqualTo(Duration.ofSeconds(5));
+        assertThat(cache.ttlFor(Map.of("ttl", 86400))).isEqualTo(Duration.ofSeconds(300));
+        assertThat(cache.ttlFor(Map.of())).isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void requestKeyIgnoresOrderAndCase() {
+        DnsLookupRequest first = request("Example.com");
+        first.setLocations(List.of("us-east-1", "eu-west-1"));
+        first.setRecordTypes(List.of("A", "mx"));
+        DnsLookupRequest second = request("example.com.");
+        second.setLocations(List.of("eu-west-1", "us-east-1"));
+        second.setRecordTypes(List.of("MX", "A"));
+
+        assertThat(LookupResultCache.keyFor(first)).isEqualTo(LookupResultCache.keyFor(second));
+    }
+
+    @Test
+    void justExpiredAnswerIsServedStaleAndClaimedForRefreshOnce() throws InterruptedException {
+        LookupResultCache cache = expiringCache(Duration.ofSeconds(10));
+        cache.put(request("example.com"), response("192.0.2.1", null));
+        Thread.sleep(100);
+
+        CachedCells first = cache.lookup(request("example.com"));
+        CachedCells second = cache.lookup(request("example.com"));
+
+        assertThat(first.isComplete()).isTrue();
+        assertThat(first.isStale()).isTrue();
+        assertThat(first.hasClaimed()).isTrue();
+        assertThat(first.merge(request("example.com"), List.of()).getStale()).isTrue();
+        assertThat(second.isComplete()).isTrue();
+        assertThat(second.hasClaimed()).isFalse();
+
+        cache.refreshFinished(first);
+        assertThat(cache.lookup(request("example.com")).hasClaimed()).isTrue();
+    }
+
+    @Test
+    void olderAnswerOnlyStandsInForFailedUpstreamCalls() throws InterruptedException {
+        LookupResultCache cache = expiringCache(Duration.ofMillis(50));
+        cache.put(request("example.com"), response("192.0.2.1", null));
+        Thread.sleep(150);
+
+        assertThat(cache.lookup(request("example.com")).isComplete()).isFalse();
+        CachedCells stale = cache.lookupStale(request("example.com"));
+        assertThat(stale.isComplete()).isTrue();
+        assertThat(stale.merge(request("example.com"), List.of()).getStale()).isTrue();
+    }
+
+    @Test
+    void offHeapRecordThatCannotFitDoesNotWalkThePolicy() {
+        LookupResultCache cache = cache("off-heap");
+        EvictionPolicy policy = spy((EvictionPolicy) ReflectionTestUtils.getField(cache, "policy"));
+        ReflectionTestUtils.setField(cache, "policy", policy);
+
+        // Small answers calcify every slab
+        int stored = 0;
+        while (cache.size() == stored) {
+            cache.put(request("small" + stored + ".example.com"), response("192.0.2.1"));
+            stored++;
+        }
+        stored = cache.size();
+        clearInvocations(policy);
+
+        cache.put(request("large.example.com"), response("x".repeat(600)));
+
+        verify(policy, never()).victim(any());
+        assertThat(cache.size()).isEqualTo(stored);
+        assertThat(cache.lookup(request("large.example.com")).isComplete()).isFalse();
+        assertThat(cache.lookup(request("small1.example.com")).isComplete()).isTrue();
+    }
+
+    @Test
+    void offHeapRecordEvictsTheLeastRecentEntryOfItsClass() {
+        LookupResultCache cache = cache("off-heap");
+        int stored = 0;
+        while (cache.size() == stored) {
+            cache.put(request("small" + stored + ".example.com"), response("192.0.2.1"));
+            stored++;
+        }
+
+        // The put that found memory full made room by evicting the oldest entry
+        assertThat(cache.lookup(request("small0.example.com")).isComplete()).isFalse();
+        assertThat(cache.lookup(request("small" + (stored - 1) + ".example.com")).isComplete()).isTrue();
+    }
+
+    private static LookupResultCache cache(String store) {
+        LookupResultCache cache = new LookupResultCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "storeType", store);
+        ReflectionTestUtils.setField(cache, "offHeapMaxBytes", DataSize.ofKilobytes(2));
+        ReflectionTestUtils.setField(cache, "offHeapSlabSize", DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(cache, "evictionType", "lru");
+        ReflectionTestUtils.setField(cache, "maxEntries", 1000);
+        ReflectionTestUtils.setField(cache, "defaultTtl", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(cache, "minTtl", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(cache, "maxTtl", Duration.ofSeconds(300));
+        ReflectionTestUtils.setField(cache, "staleWhileRevalidate", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(cache, "maxStale", Duration.ofMinutes(5));
+        cache.init();
+        return cache;
+    }
+
+    // Answers without a TTL expire after 50 ms
+    private static LookupResultCache expiringCache(Duration staleWhileRevalidate) {
+        LookupResultCache cache = cache("heap");
+        ReflectionTestUtils.setField(cache, "defaultTtl", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(cache, "minTtl", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(cache, "staleWhileRevalidate", staleWhileRevalidate);
+        return cache;
+    }
+
+    private static DnsLookupRequest request(String domain) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain(domain);
+        request.setLocations(List.of("us-east-1"));
+        request.setRecordTypes(List.of("A"));
+        return request;
+    }
+
+    private static DnsLookupResponse response(String answer) {
+        return response(answer, 60);
+    }
+
+    private static DnsLookupResponse response(String answer, Integer ttl) {
+        Map<String, Object> record = new HashMap<>(Map.of("record_type", "A", "records", List.of(answer)));
+        if (ttl != null) {
+            record.put("ttl", ttl);
+        }
+        Map<String, Object> location = Map.of("status", "success", "records", Map.of("A", record));
+        return new DnsLookupResponse("example.com", "success",
+            Map.of("by_location", Map.of("us-east-1", location)), null);
+    }
+}
@@ -0,0 +1,75 @@
+package com.oteldemo.gateway.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapRecordStoreTest {
+
+    private static final int SLAB = 1024;
+
+    private final OffHeapRecordStore store =
+        new OffHeapRecordStore(new ObjectMapper(), 2 * SLAB, SLAB, new SimpleMeterRegistry());
+
+    @Test
+    void recordsRoundTrip() {
+        Map<String, Object> record = record(40);
+
+        Object handle = store.put(record);
+
+        assertThat(store.get(handle)).isEqualTo(record);
+    }
+
+    @Test
+    void recordsLargerThanASlabAreRejectedUpFront() {
+        assertThat(store.put(record(2 * SLAB))).isNull();
+        assertThat(store.canMakeRoom()).isFalse();
+    }
+
+    @Test
+    void slabsStayWithTheirSizeClass() {
+        List<Object> small = fill(40);
+
+        // Both slabs hold small chunks, and no large record is stored to make room
+        assertThat(store.put(record(600))).isNull();
+        assertThat(store.canMakeRoom()).isFalse();
+
+        // Releasing a small record frees a small chunk, still too small
+        store.release(small.remove(0));
+        assertThat(store.put(record(600))).isNull();
+        assertThat(store.canMakeRoom()).isFalse();
+    }
+
+    @Test
+    void recordsReuseChunksOfTheirOwnClass() {
+        List<Object> small = fill(40);
+
+        assertThat(store.put(record(40))).isNull();
+        assertThat(store.canMakeRoom()).isTrue();
+        assertThat(store.makesRoom(small.get(0))).isTrue();
+
+        store.release(small.get(0));
+        assertThat(store.put(record(40))).isNotNull();
+    }
+
+    // Stores records of the given size until memory is full
+    private List<Object> fill(int size) {
+        List<Object> handles = new ArrayList<>();
+        Object handle;
+        while ((handle = store.put(record(size))) != null) {
+            handles.add(handle);
+        }
+        assertThat(handles).hasSizeGreaterThan(2);
+        return handles;
+    }
+
+    private static Map<String, Object> record(int size) {
+        return Map.of("record_type", "TXT", "records", List.of("x".repeat(size)));
+    }
+}
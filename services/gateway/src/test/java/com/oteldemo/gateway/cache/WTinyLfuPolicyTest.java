@@ -0,0 +1,91 @@
+package com.oteldemo.gateway.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WTinyLfuPolicyTest {
+
+    @Test
+    void keepsNoMoreKeysThanCapacity() {
+        WTinyLfuPolicy policy = new WTinyLfuPolicy(100);
+        Set<String> cached = new HashSet<>();
+
+        for (int i = 0; i < 1_000; i++) {
+            String key = "key-" + i;
+            cached.add(key);
+            List<String> evicted = policy.onInsert(key);
+            evicted.forEach(cached::remove);
+            if (i % 3 == 0) {
+                policy.onAccess(key);
+            }
+
+            assertThat(cached).hasSizeLessThanOrEqualTo(100);
+        }
+        assertThat(cached).hasSize(100);
+    }
+
+    @Test
+    void evictsNothingUntilFull() {
+        WTinyLfuPolicy policy = new WTinyLfuPolicy(100);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.onInsert("key-" + i)).isEmpty();
+        }
+        assertThat(policy.onInsert("key-100")).hasSize(1);
+    }
+
+    @Test
+    void frequentlyReadKeysSurviveAScan() {
+        WTinyLfuPolicy policy = new WTinyLfuPolicy(100);
+        Set<String> cached = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            String key = "popular-" + i;
+            cached.add(key);
+            policy.onInsert(key).forEach(cached::remove);
+            policy.onAccess(key);
+            policy.onAccess(key);
+            policy.onAccess(key);
+        }
+
+        // A crawler requests many domains once each
+        for (int i = 0; i < 500; i++) {
+            String key = "one-off-" + i;
+            cached.add(key);
+            policy.onInsert(key).forEach(cached::remove);
+        }
+
+        long popularLeft = cached.stream().filter(key -> key.startsWith("popular-")).count();
+        assertThat(popularLeft).isGreaterThanOrEqualTo(90);
+    }
+
+    @Test
+    void victimPrefersProbationAndHonoursTheFilter() {
+        WTinyLfuPolicy policy = new WTinyLfuPolicy(100);
+        for (int i = 0; i < 10; i++) {
+            policy.onInsert("key-" + i);
+        }
+        // key-0 moves to the protected segment; key-9 is still in the window
+        policy.onAccess("key-0");
+
+        assertThat(policy.victim(key -> true)).isEqualTo("key-1");
+        assertThat(policy.victim(key -> key.equals("key-0") || key.equals("key-9"))).isEqualTo("key-9");
+        assertThat(policy.victim(key -> false)).isNull();
+    }
+
+    @Test
+    void removedKeysAreNoLongerTracked() {
+        WTinyLfuPolicy policy = new WTinyLfuPolicy(100);
+        policy.onInsert("a.example.com");
+        policy.onInsert("b.example.com");
+
+        policy.onRemove("a.example.com");
+        policy.onRemove("b.example.com");
+
+        assertThat(policy.victim(key -> true)).isNull();
+    }
+}
@@ -0,0 +1,209 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = limiter(4, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        waiters.shutdownNow();
+    }
+
+    @Test
+    void admitsUpToTheLimitThenRejects() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(LookupPriority.INTERACTIVE);
+        }
+
+        assertThatThrownBy(() -> limiter.tryAcquire(LookupPriority.INTERACTIVE))
+            .isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(rejections(LookupPriority.INTERACTIVE, "limit")).isEqualTo(1);
+    }
+
+    @Test
+    void bulkLookupsHoldAtMostTheirShare() {
+        limiter.tryAcquire(LookupPriority.BULK);
+        limiter.tryAcquire(LookupPriority.BULK);
+
+        assertThatThrownBy(() -> limiter.tryAcquire(LookupPriority.BULK))
+            .isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(limiter.tryAcquire(LookupPriority.INTERACTIVE)).isNotNull();
+    }
+
+    @Test
+    void completedPermitFreesItsSlot() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = fill();
+
+        permits.get(0).released();
+        permits.get(0).released();
+
+        assertThat(limiter.tryAcquire(LookupPriority.INTERACTIVE)).isNotNull();
+        assertThatThrownBy(() -> limiter.tryAcquire(LookupPriority.INTERACTIVE))
+            .as("completing a permit twice frees one slot")
+            .isInstanceOf(ConcurrencyLimitExceededException.class);
+    }
+
+    @Test
+    void waiterGetsTheNextFreeSlot() throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = fill();
+        Future<AdaptiveConcurrencyLimiter.Permit> waiter =
+            waiters.submit(() -> limiter.acquire(LookupPriority.INTERACTIVE));
+        awaitQueued(LookupPriority.INTERACTIVE);
+
+        permits.get(0).released();
+
+        assertThat(waiter.get(1, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void freedSlotGoesToInteractiveBeforeBulk() throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = fill();
+        Future<AdaptiveConcurrencyLimiter.Permit> bulk = waiters.submit(() -> limiter.acquire(LookupPriority.BULK));
+        awaitQueued(LookupPriority.BULK);
+        Future<AdaptiveConcurrencyLimiter.Permit> interactive =
+            waiters.submit(() -> limiter.acquire(LookupPriority.INTERACTIVE));
+        awaitQueued(LookupPriority.INTERACTIVE);
+
+        permits.get(0).released();
+
+        assertThat(interactive.get(1, TimeUnit.SECONDS)).isNotNull();
+        assertThatThrownBy(() -> bulk.get(1, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(rejections(LookupPriority.BULK, "timeout")).isEqualTo(1);
+    }
+
+    @Test
+    void waitIsCutShortByTheDeadline() {
+        fill();
+
+        assertThatThrownBy(() -> limiter.acquire(LookupPriority.INTERACTIVE, Duration.ofMillis(10)))
+            .isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(rejections(LookupPriority.INTERACTIVE, "deadline")).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() {
+        ReflectionTestUtils.setField(limiter, "maxQueue", 0);
+        fill();
+
+        assertThatThrownBy(() -> limiter.acquire(LookupPriority.INTERACTIVE))
+            .isInstanceOf(ConcurrencyLimitExceededException.class);
+        assertThat(rejections(LookupPriority.INTERACTIVE, "queue_full")).isEqualTo(1);
+    }
+
+    @Test
+    void dropsLowerTheLimitDownToTheMinimum() {
+        limiter = limiter(20, 10);
+        // The first sample only sets the baseline RTT
+        limiter.tryAcquire(LookupPriority.INTERACTIVE).complete(response("success"));
+
+        limiter.tryAcquire(LookupPriority.INTERACTIVE).dropped();
+        assertThat(limiter.getLimit()).isEqualTo(18);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire(LookupPriority.INTERACTIVE).complete(response("error"));
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void limitGrowsWhileTheRttStaysAtTheBaseline() throws InterruptedException {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = fill();
+        Thread.sleep(100);
+
+        // The latest call sets the baseline; the one before it took barely longer
+        permits.get(3).complete(response("success"));
+        permits.get(2).complete(response("success"));
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void disabledLimiterAdmitsEverything() {
+        ReflectionTestUtils.setField(limiter, "enabled", false);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(LookupPriority.BULK);
+            limiter.acquire(LookupPriority.INTERACTIVE);
+        }
+    }
+
+    private List<AdaptiveConcurrencyLimiter.Permit> fill() {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < limiter.getLimit(); i++) {
+            permits.add(limiter.tryAcquire(LookupPriority.INTERACTIVE));
+        }
+        return permits;
+    }
+
+    private void awaitQueued(LookupPriority priority) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (meterRegistry.get("gateway.concurrency_limit.queued").tag("priority", tag(priority)).gauge().value() < 1) {
+            assertThat(System.nanoTime()).as("waiter queued in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private double rejections(LookupPriority priority, String reason) {
+        return meterRegistry.get("gateway.concurrency_limit.rejections")
+            .tag("priority", tag(priority)).tag("reason", reason).counter().count();
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue) {
+        meterRegistry = new SimpleMeterRegistry();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(limiter, "minLimit", 2);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 100);
+        ReflectionTestUtils.setField(limiter, "smoothing", 1.0);
+        ReflectionTestUtils.setField(limiter, "probeInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(limiter, "retryAfter", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(limiter, "defaultPriority", "interactive");
+        ReflectionTestUtils.setField(limiter, "maxQueue", maxQueue);
+        ReflectionTestUtils.setField(limiter, "interactiveShare", 1.0);
+        ReflectionTestUtils.setField(limiter, "interactiveMaxWait", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(limiter, "bulkShare", 0.5);
+        ReflectionTestUtils.setField(limiter, "bulkMaxWait", Duration.ofMillis(200));
+        limiter.init();
+        return limiter;
+    }
+
+    private static String tag(LookupPriority priority) {
+        return priority.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static DnsLookupResponse response(String status) {
+        return new DnsLookupResponse("example.com", status, null, null);
+    }
+}
@@ -0,0 +1,156 @@
+package com.oteldemo.gateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheWarmupServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final DnsLookupService dnsLookupService = mock(DnsLookupService.class);
+    private final Queue<DnsLookupRequest> looked = new ConcurrentLinkedQueue<>();
+    private CacheWarmupService warmup;
+    private CacheWarmupHealthIndicator health;
+
+    @BeforeEach
+    void setUp() {
+        warmup = new CacheWarmupService();
+        ReflectionTestUtils.setField(warmup, "dnsLookupService", dnsLookupService);
+        ReflectionTestUtils.setField(warmup, "lookupExecutor", executor);
+        ReflectionTestUtils.setField(warmup, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(warmup, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(warmup, "concurrency", 4);
+        ReflectionTestUtils.setField(warmup, "timeout", Duration.ofSeconds(5));
+
+        health = new CacheWarmupHealthIndicator();
+        ReflectionTestUtils.setField(health, "cacheWarmupService", warmup);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void looksUpEveryListedDomain() throws IOException {
+        when(dnsLookupService.lookup(any())).thenAnswer(invocation -> {
+            DnsLookupRequest request = invocation.getArgument(0);
+            looked.add(request);
+            return new DnsLookupResponse(request.getDomain(),
+                request.getDomain().startsWith("bad") ? "error" : "success", null, null);
+        });
+        useFile("""
+            # popular domains
+            example.com
+
+            {"domain": "example.org", "record_types": ["MX"]}
+            {"locations": ["us-east-1"]}
+            {"domain": "broken
+            bad.example.net
+            """);
+
+        warmup.run(null);
+
+        assertThat(looked).extracting(DnsLookupRequest::getDomain)
+            .containsExactlyInAnyOrder("example.com", "example.org", "bad.example.net");
+        assertThat(looked).filteredOn(request -> request.getDomain().equals("example.org"))
+            .singleElement().satisfies(request -> assertThat(request.getRecordTypes()).containsExactly("MX"));
+        assertThat(warmup.details())
+            .containsEntry("state", "completed")
+            .containsEntry("total", 3)
+            .containsEntry("resolved", 2)
+            .containsEntry("failed", 1);
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void readinessIsHeldDownWhileRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(dnsLookupService.lookup(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new DnsLookupResponse("example.com", "success", null, null);
+        });
+        useFile("example.com\n");
+
+        Future<?> running = executor.submit(() -> warmup.run(null));
+        Thread.sleep(100);
+        assertThat(health.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        release.countDown();
+        running.get(2, TimeUnit.SECONDS);
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void givesUpAtTheTimeout() throws IOException {
+        ReflectionTestUtils.setField(warmup, "timeout", Duration.ofMillis(200));
+        CountDownLatch release = new CountDownLatch(1);
+        when(dnsLookupService.lookup(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new DnsLookupResponse("example.com", "success", null, null);
+        });
+        useFile(String.join("\n", List.of("a.example.com", "b.example.com", "c.example.com",
+                                          "d.example.com", "e.example.com")));
+
+        long start = System.nanoTime();
+        warmup.run(null);
+        release.countDown();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(warmup.details()).containsEntry("state", "timed_out");
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void unreadableFileStartsCold() {
+        ReflectionTestUtils.setField(warmup, "warmupFile", tempDir.resolve("missing.txt").toString());
+
+        warmup.run(null);
+
+        assertThat(warmup.details()).containsEntry("state", "failed");
+        assertThat(health.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void noFileMeansNoWarmup() {
+        ReflectionTestUtils.setField(warmup, "warmupFile", "");
+
+        warmup.run(null);
+
+        assertThat(warmup.details()).containsOnlyKeys("state").containsEntry("state", "disabled");
+    }
+
+    private void useFile(String content) throws IOException {
+        Path file = tempDir.resolve("warmup.txt");
+        Files.writeString(file, content);
+        ReflectionTestUtils.setField(warmup, "warmupFile", file.toString());
+    }
+}
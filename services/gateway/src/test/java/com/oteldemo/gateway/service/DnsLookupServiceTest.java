@@ -0,0 +1,211 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.cache.CachedCells;
+import com.oteldemo.gateway.cache.LookupResultCache;
+import com.oteldemo.gateway.cache.NegativeLookupCache;
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DnsLookupServiceTest {
+
+    private static final List<String> LOCATIONS = List.of("us-east-1", "eu-west-1");
+
+    private LookupBackend backend;
+    private LookupResultCache resultCache;
+    private UpstreamCircuitBreaker.Call call;
+    private AdaptiveConcurrencyLimiter.Permit permit;
+    private DnsLookupService service;
+
+    @BeforeEach
+    void setUp() {
+        LookupDeadlines deadlines = new LookupDeadlines();
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ZERO);
+        ReflectionTestUtils.setField(deadlines, "maxTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(deadlines, "upstreamMargin", Duration.ofMillis(100));
+
+        NegativeLookupCache negativeCache = new NegativeLookupCache();
+        ReflectionTestUtils.setField(negativeCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(negativeCache, "enabled", true);
+        ReflectionTestUtils.setField(negativeCache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(negativeCache, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(negativeCache, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.invokeMethod(negativeCache, "init");
+
+        // Nothing is ever cached, so every lookup reaches the negative cache or the backend
+        CachedCells miss = mock(CachedCells.class);
+        when(miss.upstreamRequests(any())).thenAnswer(invocation -> List.of(invocation.<DnsLookupRequest>getArgument(0)));
+        when(miss.merge(any(), anyList())).thenAnswer(invocation ->
+            invocation.<List<DnsLookupResponse>>getArgument(1).get(0));
+        resultCache = mock(LookupResultCache.class);
+        when(resultCache.lookup(any())).thenReturn(miss);
+        when(resultCache.lookupStale(any())).thenReturn(miss);
+
+        UpstreamCircuitBreaker breaker = mock(UpstreamCircuitBreaker.class);
+        call = mock(UpstreamCircuitBreaker.Call.class);
+        when(breaker.tryAcquire()).thenReturn(call);
+        AdaptiveConcurrencyLimiter limiter = mock(AdaptiveConcurrencyLimiter.class);
+        permit = mock(AdaptiveConcurrencyLimiter.Permit.class);
+        when(limiter.acquire(any(), any())).thenReturn(permit);
+
+        backend = mock(LookupBackend.class);
+        service = new DnsLookupService();
+        ReflectionTestUtils.setField(service, "lookupBackend", backend);
+        ReflectionTestUtils.setField(service, "lookupResultCache", resultCache);
+        ReflectionTestUtils.setField(service, "negativeLookupCache", negativeCache);
+        ReflectionTestUtils.setField(service, "concurrencyLimiter", limiter);
+        ReflectionTestUtils.setField(service, "lookupDeadlines", deadlines);
+        ReflectionTestUtils.setField(service, "circuitBreaker", breaker);
+        ReflectionTestUtils.setField(service, "cacheEnabled", true);
+        ReflectionTestUtils.setField(service, "coalescingEnabled", false);
+    }
+
+    @Test
+    void transientFailuresDoNotPoisonLaterLookups() {
+        when(backend.submitDnsLookup(any()))
+            .thenReturn(allFailed(null, "dig command failed: signal: killed"))
+            .thenReturn(resolved());
+
+        assertThat(service.lookup(request("flaky.example.com")).getMessage()).isEqualTo("all failed");
+        DnsLookupResponse retried = service.lookup(request("flaky.example.com"));
+
+        assertThat(retried.getMessage()).isEqualTo("resolved");
+        verify(backend, times(2)).submitDnsLookup(any());
+    }
+
+    @Test
+    void nxdomainEverywhereIsAnsweredFromTheNegativeCache() {
+        when(backend.submitDnsLookup(any())).thenReturn(allFailed("NXDOMAIN", "NXDOMAIN"));
+
+        service.lookup(request("missing.example.com"));
+        DnsLookupResponse again = service.lookup(request("missing.example.com"));
+
+        assertThat(again.getMessage()).contains("negative cache");
+        verify(backend, times(1)).submitDnsLookup(any());
+    }
+
+    @Test
+    void nxdomainFromSomeLocationsOnlyIsNotRemembered() {
+        DnsLookupResponse mixed = allFailed("NXDOMAIN", "NXDOMAIN");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> byLocation = (Map<String, Object>) mixed.getResults().get("by_location");
+        byLocation.put("eu-west-1", locationResult(null, "dig command failed: signal: killed"));
+        when(backend.submitDnsLookup(any())).thenReturn(mixed);
+
+        service.lookup(request("split.example.com"));
+        service.lookup(request("split.example.com"));
+
+        verify(backend, times(2)).submitDnsLookup(any());
+    }
+
+    @Test
+    void upstreamErrorIsAnsweredFromAStaleEntry() {
+        CachedCells stale = mock(CachedCells.class);
+        when(stale.isComplete()).thenReturn(true);
+        when(stale.merge(any(), anyList()))
+            .thenReturn(new DnsLookupResponse("example.com", "success", null, "stale", true, null));
+        when(resultCache.lookupStale(any())).thenReturn(stale);
+        when(backend.submitDnsLookup(any()))
+            .thenReturn(new DnsLookupResponse("example.com", "error", null, "orchestrator down"));
+
+        DnsLookupResponse response = service.lookup(request("example.com"));
+
+        assertThat(response.getStatus()).isEqualTo("success");
+        assertThat(response.getStale()).isTrue();
+    }
+
+    @Test
+    void limiterRejectionIsAnsweredFromAStaleEntry() {
+        CachedCells stale = mock(CachedCells.class);
+        when(stale.isComplete()).thenReturn(true);
+        when(stale.merge(any(), anyList()))
+            .thenReturn(new DnsLookupResponse("example.com", "success", null, "stale", true, null));
+        when(resultCache.lookupStale(any())).thenReturn(stale);
+        when(backend.submitDnsLookup(any())).thenThrow(
+            new ConcurrencyLimitExceededException(LookupPriority.INTERACTIVE, 10, Duration.ofSeconds(1)));
+
+        assertThat(service.lookup(request("example.com")).getStale()).isTrue();
+    }
+
+    @Test
+    void streamClientGoingAwayIsNotAnUpstreamFailure() {
+        when(backend.streamDnsLookup(any(), any())).thenAnswer(invocation -> {
+            invocation.<LocationResultListener>getArgument(1).onLocationResult("us-east-1", Map.of());
+            return resolved();
+        });
+        LocationResultListener disconnected = (location, result) -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        };
+
+        assertThatThrownBy(() -> service.lookupStreaming(request("example.com"), disconnected))
+            .isInstanceOf(StreamAbortedException.class)
+            .hasCauseInstanceOf(UncheckedIOException.class);
+        verify(call).ignored();
+        verify(call, never()).failed();
+        verify(permit).released();
+        verify(permit, never()).dropped();
+    }
+
+    private static DnsLookupRequest request(String domain) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain(domain);
+        request.setLocations(LOCATIONS);
+        request.setRecordTypes(List.of("A"));
+        return request;
+    }
+
+    // Every location answered, none succeeded
+    private static DnsLookupResponse allFailed(String rcode, String error) {
+        Map<String, Object> byLocation = new LinkedHashMap<>();
+        for (String location : LOCATIONS) {
+            byLocation.put(location, locationResult(rcode, error));
+        }
+        return new DnsLookupResponse("example.com", "success", Map.of("by_location", byLocation), "all failed");
+    }
+
+    private static Map<String, Object> locationResult(String rcode, String error) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("record_type", "A");
+        record.put("records", List.of());
+        if (rcode != null) {
+            record.put("rcode", rcode);
+        }
+        record.put("error", error);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", "failed");
+        result.put("records", Map.of("A", record));
+        result.put("error", "All DNS lookups failed");
+        return result;
+    }
+
+    private static DnsLookupResponse resolved() {
+        Map<String, Object> record = Map.of("record_type", "A", "records", List.of("192.0.2.1"), "rcode", "NOERROR");
+        Map<String, Object> byLocation = new LinkedHashMap<>();
+        for (String location : LOCATIONS) {
+            byLocation.put(location, Map.of("status", "success", "records", Map.of("A", record)));
+        }
+        return new DnsLookupResponse("example.com", "success", Map.of("by_location", byLocation), "resolved");
+    }
+}
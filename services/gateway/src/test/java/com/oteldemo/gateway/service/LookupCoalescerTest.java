@@ -0,0 +1,176 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import com.oteldemo.gateway.model.LookupPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LookupCoalescerTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private LookupDeadlines deadlines;
+    private LookupCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        deadlines = new LookupDeadlines();
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ZERO);
+        ReflectionTestUtils.setField(deadlines, "maxTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(deadlines, "upstreamMargin", Duration.ofMillis(100));
+
+        coalescer = new LookupCoalescer();
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(coalescer, "lookupDeadlines", deadlines);
+        coalescer.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void followersShareTheLeadersResponse() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Future<DnsLookupResponse> leader = lead(request(null), () -> {
+            calls.incrementAndGet();
+            await(release);
+            return response("success");
+        });
+
+        Future<DnsLookupResponse> follower = callers.submit(
+            () -> coalescer.execute(request(null), () -> {
+                calls.incrementAndGet();
+                return response("own");
+            }));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(leader.get(1, TimeUnit.SECONDS).getStatus()).isEqualTo("success");
+        assertThat(follower.get(1, TimeUnit.SECONDS).getStatus()).isEqualTo("success");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void followerStopsWaitingAtItsOwnDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        lead(request(null), () -> {
+            await(release);
+            return response("success");
+        });
+
+        long start = System.nanoTime();
+        DnsLookupResponse response = coalescer.execute(request(50L), () -> response("own"));
+
+        assertThat(response.getStatus()).isEqualTo("timeout");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        release.countDown();
+    }
+
+    @Test
+    void followerWithoutDeadlineDoesNotTakeTheLeadersTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        lead(request(20L), () -> {
+            await(release);
+            return response("timeout");
+        });
+
+        Future<DnsLookupResponse> follower = callers.submit(
+            () -> coalescer.execute(request(null), () -> response("success")));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(follower.get(1, TimeUnit.SECONDS).getStatus()).isEqualTo("success");
+    }
+
+    @Test
+    void followerDoesNotTakeTheLeadersLimiterRejection() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        DnsLookupRequest bulk = request(null);
+        bulk.setPriority(LookupPriority.BULK);
+        Future<DnsLookupResponse> leader = lead(bulk, () -> {
+            await(release);
+            throw new ConcurrencyLimitExceededException(LookupPriority.BULK, 10, Duration.ofSeconds(1));
+        });
+
+        DnsLookupRequest interactive = request(null);
+        interactive.setPriority(LookupPriority.INTERACTIVE);
+        Future<DnsLookupResponse> follower = callers.submit(
+            () -> coalescer.execute(interactive, () -> response("success")));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(follower.get(1, TimeUnit.SECONDS).getStatus()).isEqualTo("success");
+        assertThat(leader).failsWithin(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void followerSharesOtherLeaderFailures() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        lead(request(null), () -> {
+            await(release);
+            throw new IllegalStateException("upstream broke");
+        });
+
+        Future<DnsLookupResponse> follower = callers.submit(
+            () -> coalescer.execute(request(null), () -> response("own")));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(follower).failsWithin(Duration.ofSeconds(1))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(IllegalStateException.class);
+    }
+
+    // Starts a leader and waits until it is in flight
+    private Future<DnsLookupResponse> lead(DnsLookupRequest request, Supplier<DnsLookupResponse> call)
+            throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<DnsLookupResponse> leader = callers.submit(() -> coalescer.execute(request, () -> {
+            started.countDown();
+            return call.get();
+        }));
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        return leader;
+    }
+
+    private DnsLookupRequest request(Long timeoutMs) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain("example.com");
+        request.setLocations(List.of("us-east-1"));
+        request.setRecordTypes(List.of("A"));
+        request.setTimeoutMs(timeoutMs);
+        deadlines.resolve(request, null);
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DnsLookupResponse response(String status) {
+        return new DnsLookupResponse("example.com", status, null, null);
+    }
+}
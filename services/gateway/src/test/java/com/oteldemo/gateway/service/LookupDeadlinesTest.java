@@ -0,0 +1,107 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LookupDeadlinesTest {
+
+    private LookupDeadlines deadlines;
+
+    @BeforeEach
+    void setUp() {
+        deadlines = new LookupDeadlines();
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ZERO);
+        ReflectionTestUtils.setField(deadlines, "maxTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(deadlines, "upstreamMargin", Duration.ofMillis(100));
+    }
+
+    @Test
+    void headerWinsOverBody() {
+        DnsLookupRequest request = request(5_000L);
+
+        deadlines.resolve(request, "2000");
+
+        assertThat(request.getTimeoutMs()).isEqualTo(2_000);
+        assertThat(deadlines.remaining(request)).isBetween(Duration.ofMillis(1_900), Duration.ofMillis(2_000));
+    }
+
+    @Test
+    void invalidHeaderFallsBackToBody() {
+        DnsLookupRequest request = request(5_000L);
+
+        deadlines.resolve(request, "soon");
+
+        assertThat(request.getTimeoutMs()).isEqualTo(5_000);
+    }
+
+    @Test
+    void noTimeoutMeansNoDeadline() {
+        DnsLookupRequest request = request(null);
+
+        deadlines.resolve(request, null);
+
+        assertThat(request.getDeadlineNanos()).isNull();
+        assertThat(deadlines.remaining(request)).isNull();
+        assertThat(deadlines.upstreamBudget(request)).isNull();
+        assertThat(deadlines.isExpired(request)).isFalse();
+    }
+
+    @Test
+    void defaultTimeoutAppliesWhenNoneIsGiven() {
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ofSeconds(3));
+        DnsLookupRequest request = request(null);
+
+        deadlines.resolve(request, " ");
+
+        assertThat(request.getTimeoutMs()).isEqualTo(3_000);
+    }
+
+    @Test
+    void timeoutIsCappedAtTheMaximum() {
+        DnsLookupRequest request = request(null);
+
+        deadlines.resolve(request, "600000");
+
+        assertThat(request.getTimeoutMs()).isEqualTo(30_000);
+    }
+
+    @Test
+    void upstreamBudgetKeepsTheMarginBack() {
+        DnsLookupRequest request = request(null);
+        request.setDeadlineNanos(System.nanoTime() + Duration.ofSeconds(2).toNanos());
+
+        assertThat(deadlines.upstreamBudget(request)).isBetween(Duration.ofMillis(1_800), Duration.ofMillis(1_900));
+    }
+
+    @Test
+    void upstreamBudgetIsAtLeastHalfOfWhatIsLeft() {
+        DnsLookupRequest request = request(null);
+        request.setDeadlineNanos(System.nanoTime() + Duration.ofMillis(120).toNanos());
+
+        // 120ms less the 100ms margin would leave at most 20ms; half of what is left is more
+        assertThat(deadlines.upstreamBudget(request)).isGreaterThan(Duration.ofMillis(20))
+            .isLessThanOrEqualTo(Duration.ofMillis(60));
+    }
+
+    @Test
+    void passedDeadlineIsExpired() {
+        DnsLookupRequest request = request(null);
+        request.setDeadlineNanos(System.nanoTime() - 1);
+
+        assertThat(deadlines.isExpired(request)).isTrue();
+        assertThat(LookupDeadlines.deadlineExceeded(request).getStatus()).isEqualTo("timeout");
+    }
+
+    private static DnsLookupRequest request(Long timeoutMs) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain("example.com");
+        request.setTimeoutMs(timeoutMs);
+        return request;
+    }
+}
@@ -0,0 +1,135 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LookupMicroBatcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final OrchestratorService orchestrator = mock(OrchestratorService.class);
+    private LookupDeadlines deadlines;
+    private LookupMicroBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsShareOneOrchestratorCall() throws Exception {
+        start(Duration.ofMillis(200));
+        when(orchestrator.submitDnsLookupBatch(anyList(), anyList())).thenAnswer(invocation -> {
+            List<DnsLookupRequest> requests = invocation.getArgument(0);
+            return requests.stream().map(request -> response(request.getDomain())).toList();
+        });
+
+        List<Future<DnsLookupResponse>> callers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            DnsLookupRequest request = request("host" + i + ".example.com", null);
+            callers.add(executor.submit(() -> batcher.submit(request)));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(callers.get(i).get(1, TimeUnit.SECONDS).getDomain()).isEqualTo("host" + i + ".example.com");
+        }
+        verify(orchestrator, times(1)).submitDnsLookupBatch(anyList(), anyList());
+        verify(orchestrator, never()).submitDnsLookup(any());
+    }
+
+    @Test
+    void lonelyLookupUsesTheRegularEndpoint() {
+        start(Duration.ofMillis(5));
+        when(orchestrator.submitDnsLookup(any())).thenReturn(response("example.com"));
+
+        DnsLookupResponse response = batcher.submit(request("example.com", null));
+
+        assertThat(response.getStatus()).isEqualTo("success");
+        verify(orchestrator, never()).submitDnsLookupBatch(anyList(), anyList());
+    }
+
+    @Test
+    void callerStopsWaitingAtItsDeadline() {
+        start(Duration.ofMillis(5));
+        CountDownLatch release = new CountDownLatch(1);
+        when(orchestrator.submitDnsLookup(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return response("example.com");
+        });
+
+        long start = System.nanoTime();
+        DnsLookupResponse response = batcher.submit(request("example.com", 100L));
+        release.countDown();
+
+        assertThat(response.getStatus()).isEqualTo("timeout");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void stoppingFailsLookupsNotYetSent() throws Exception {
+        // The window outlasts the test, so the lookup is still being collected
+        start(Duration.ofSeconds(30));
+        Future<DnsLookupResponse> caller = executor.submit(() -> batcher.submit(request("example.com", null)));
+        Thread.sleep(100);
+
+        batcher.stop();
+
+        assertThat(caller).failsWithin(Duration.ofSeconds(2))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(IllegalStateException.class);
+        verify(orchestrator, never()).submitDnsLookup(any());
+    }
+
+    private void start(Duration window) {
+        deadlines = new LookupDeadlines();
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ZERO);
+        ReflectionTestUtils.setField(deadlines, "maxTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(deadlines, "upstreamMargin", Duration.ofMillis(100));
+
+        batcher = new LookupMicroBatcher();
+        ReflectionTestUtils.setField(batcher, "orchestratorService", orchestrator);
+        ReflectionTestUtils.setField(batcher, "lookupExecutor", executor);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batcher, "lookupDeadlines", deadlines);
+        ReflectionTestUtils.setField(batcher, "window", window);
+        ReflectionTestUtils.setField(batcher, "maxSize", 64);
+        batcher.start();
+    }
+
+    private DnsLookupRequest request(String domain, Long timeoutMs) {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain(domain);
+        request.setLocations(List.of("us-east-1"));
+        request.setRecordTypes(List.of("A"));
+        request.setTimeoutMs(timeoutMs);
+        deadlines.resolve(request, null);
+        return request;
+    }
+
+    private static DnsLookupResponse response(String domain) {
+        return new DnsLookupResponse(domain, "success", null, null);
+    }
+}
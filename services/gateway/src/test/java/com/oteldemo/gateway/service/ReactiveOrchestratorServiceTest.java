@@ -0,0 +1,131 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupRequest;
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveOrchestratorServiceTest {
+
+    private static final List<String> URLS = List.of("http://orchestrator-a:8001", "http://orchestrator-b:8001");
+
+    // Host -> how long it takes to answer, and the status it answers with
+    private final Map<String, Duration> delays = new ConcurrentHashMap<>();
+    private final Map<String, String> statuses = new ConcurrentHashMap<>();
+    private final Queue<String> calledHosts = new ConcurrentLinkedQueue<>();
+
+    private OrchestratorHedging hedging;
+    private ReactiveOrchestratorService service;
+
+    @BeforeEach
+    void setUp() {
+        LookupDeadlines deadlines = new LookupDeadlines();
+        ReflectionTestUtils.setField(deadlines, "defaultTimeout", Duration.ZERO);
+        ReflectionTestUtils.setField(deadlines, "maxTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(deadlines, "upstreamMargin", Duration.ofMillis(100));
+
+        hedging = new OrchestratorHedging();
+        ReflectionTestUtils.setField(hedging, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hedging, "enabled", true);
+        ReflectionTestUtils.setField(hedging, "percentile", 0.95);
+        ReflectionTestUtils.setField(hedging, "initialDelay", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(hedging, "minDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(hedging, "maxDelay", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(hedging, "minSamples", 100L);
+        // Every call pays for a hedge
+        ReflectionTestUtils.setField(hedging, "budgetPercent", 100.0);
+        ReflectionTestUtils.setField(hedging, "delayRefresh", Duration.ofSeconds(60));
+        ReflectionTestUtils.invokeMethod(hedging, "init");
+
+        WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                String host = request.url().getHost();
+                calledHosts.add(host);
+                ClientResponse response = ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"domain\":\"example.com\",\"status\":\"" + statuses.getOrDefault(host, "success")
+                          + "\",\"message\":\"" + host + "\"}")
+                    .build();
+                return Mono.just(response).delayElement(delays.getOrDefault(host, Duration.ZERO));
+            })
+            .build();
+
+        service = new ReactiveOrchestratorService();
+        ReflectionTestUtils.setField(service, "orchestratorWebClient", webClient);
+        ReflectionTestUtils.setField(service, "lookupDeadlines", deadlines);
+        ReflectionTestUtils.setField(service, "hedging", hedging);
+        ReflectionTestUtils.setField(service, "orchestratorUrls", URLS);
+    }
+
+    @Test
+    void callsRotateOverInstances() {
+        ReflectionTestUtils.setField(hedging, "enabled", false);
+        service.init();
+
+        for (int i = 0; i < 4; i++) {
+            service.submitDnsLookup(request()).block(Duration.ofSeconds(1));
+        }
+
+        assertThat(calledHosts).containsExactly("orchestrator-a", "orchestrator-b", "orchestrator-a", "orchestrator-b");
+    }
+
+    @Test
+    void slowCallIsHedgedToTheNextInstance() {
+        service.init();
+        delays.put("orchestrator-a", Duration.ofSeconds(2));
+
+        DnsLookupResponse response = service.submitDnsLookup(request()).block(Duration.ofSeconds(1));
+
+        assertThat(response.getMessage()).isEqualTo("orchestrator-b");
+        assertThat(calledHosts).containsExactly("orchestrator-a", "orchestrator-b");
+    }
+
+    @Test
+    void fastCallIsNotHedged() throws InterruptedException {
+        service.init();
+
+        DnsLookupResponse response = service.submitDnsLookup(request()).block(Duration.ofSeconds(1));
+        Thread.sleep(200);
+
+        assertThat(response.getMessage()).isEqualTo("orchestrator-a");
+        assertThat(calledHosts).containsExactly("orchestrator-a");
+    }
+
+    @Test
+    void errorAnswerWaitsForTheHedge() {
+        service.init();
+        delays.put("orchestrator-a", Duration.ofMillis(200));
+        statuses.put("orchestrator-a", "error");
+        delays.put("orchestrator-b", Duration.ofMillis(300));
+
+        DnsLookupResponse response = service.submitDnsLookup(request()).block(Duration.ofSeconds(1));
+
+        assertThat(response.getStatus()).isEqualTo("success");
+        assertThat(response.getMessage()).isEqualTo("orchestrator-b");
+    }
+
+    private static DnsLookupRequest request() {
+        DnsLookupRequest request = new DnsLookupRequest();
+        request.setDomain("example.com");
+        request.setLocations(List.of("us-east-1"));
+        request.setRecordTypes(List.of("A"));
+        return request;
+    }
+}
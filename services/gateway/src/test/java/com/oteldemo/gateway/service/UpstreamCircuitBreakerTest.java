@@ -0,0 +1,156 @@
+package com.oteldemo.gateway.service;
+
+import com.oteldemo.gateway.model.DnsLookupResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamCircuitBreakerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UpstreamCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = breaker(Duration.ofMinutes(1), Duration.ofSeconds(5));
+    }
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire().failed();
+        }
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAtTheFailureRateAndRejectsCalls() {
+        breaker.tryAcquire().complete(response("success"));
+        breaker.tryAcquire().complete(response("success"));
+        breaker.tryAcquire().complete(response("error"));
+        breaker.tryAcquire().complete(response("timeout"));
+        breaker.tryAcquire().failed();
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(meterRegistry.get("gateway.circuit_breaker.rejections").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.circuit_breaker.transitions")
+                       .tag("from", "closed").tag("to", "open").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void staysClosedBelowTheFailureRate() {
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquire().complete(response(i < 6 ? "success" : "error"));
+        }
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensOnSlowCalls() {
+        breaker = breaker(Duration.ofMinutes(1), Duration.ZERO);
+        for (int i = 0; i < 5; i++) {
+            breaker.tryAcquire().complete(response("success"));
+        }
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoredCallsAreNotCounted() {
+        for (int i = 0; i < 10; i++) {
+            breaker.tryAcquire().ignored();
+        }
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void closesAfterTheHalfOpenProbesSucceed() {
+        breaker = breaker(Duration.ZERO, Duration.ofSeconds(5));
+        open();
+
+        UpstreamCircuitBreaker.Call first = breaker.tryAcquire();
+        UpstreamCircuitBreaker.Call second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).as("only half-open-calls probes at a time").isNull();
+
+        first.complete(response("success"));
+        second.complete(response("success"));
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+        // The outcomes that opened it are forgotten
+        breaker.tryAcquire().failed();
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void reopensWhenAProbeFails() {
+        breaker = breaker(Duration.ZERO, Duration.ofSeconds(5));
+        open();
+
+        breaker.tryAcquire().failed();
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoredProbeLetsAnotherThrough() {
+        breaker = breaker(Duration.ZERO, Duration.ofSeconds(5));
+        open();
+        UpstreamCircuitBreaker.Call first = breaker.tryAcquire();
+        breaker.tryAcquire();
+        assertThat(breaker.tryAcquire()).isNull();
+
+        first.ignored();
+
+        assertThat(breaker.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    void disabledBreakerAllowsEverything() {
+        ReflectionTestUtils.setField(breaker, "enabled", false);
+        for (int i = 0; i < 20; i++) {
+            UpstreamCircuitBreaker.Call call = breaker.tryAcquire();
+            assertThat(call).isNotNull();
+            call.failed();
+        }
+
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.CLOSED);
+    }
+
+    private void open() {
+        for (int i = 0; i < 5; i++) {
+            breaker.tryAcquire().failed();
+        }
+        assertThat(breaker.getState()).isEqualTo(UpstreamCircuitBreaker.State.OPEN);
+    }
+
+    private UpstreamCircuitBreaker breaker(Duration waitInOpen, Duration slowCallThreshold) {
+        meterRegistry = new SimpleMeterRegistry();
+        UpstreamCircuitBreaker breaker = new UpstreamCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "window", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(breaker, "minimumCalls", 5);
+        ReflectionTestUtils.setField(breaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(breaker, "slowCallThreshold", slowCallThreshold);
+        ReflectionTestUtils.setField(breaker, "slowCallRateThreshold", 0.8);
+        ReflectionTestUtils.setField(breaker, "waitInOpen", waitInOpen);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        breaker.init();
+        return breaker;
+    }
+
+    private static DnsLookupResponse response(String status) {
+        return new DnsLookupResponse("example.com", status, null, null);
+    }
+}
@@ -9,6 +9,15 @@ class DnsOrchestrateRequest(BaseModel):
                                  description="Geo locations for DNS lookup")
     record_types: List[str] = Field(default=["A", "AAAA", "MX", "TXT", "NS"],
                                     description="DNS record types to query")
+    timeout_seconds: Optional[float] = Field(default=None, gt=0,
+                                             description="Caller's remaining time budget; "
+                                                         "results received by then are returned")
+
+
+class DnsBatchItem(DnsOrchestrateRequest):
+    """One lookup of a batched request, carrying its caller's trace context"""
+    trace_context: Optional[Dict[str, str]] = Field(default=None,
+                                                    description="W3C trace context of the original caller")
 
 
 class DnsTaskMessage(BaseModel):
@@ -17,6 +26,7 @@ class DnsTaskMessage(BaseModel):
     task_id: str
     domain: str
     location: str  # Optional, not used in fan-out pattern
+    locations: List[str] = []  # Worker locations that should answer; empty means all
     record_types: List[str]
     timestamp: str
 
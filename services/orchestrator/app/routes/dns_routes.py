@@ -1,13 +1,18 @@
+import asyncio
+import json
 import logging
 import uuid
 from datetime import datetime
-from typing import Dict, Any
+from typing import Dict, Any, Awaitable, Callable, List, Optional
 
 from fastapi import APIRouter, HTTPException
-from opentelemetry import trace
+from fastapi.responses import StreamingResponse
+from opentelemetry import context, trace
+from opentelemetry.propagate import extract
 from opentelemetry.trace import Status, StatusCode
 
 from app.models.dns_models import (
+    DnsBatchItem,
     DnsOrchestrateRequest,
     DnsOrchestrateResponse,
     DnsTaskMessage
@@ -19,6 +24,9 @@ tracer = trace.get_tracer(__name__)
 
 router = APIRouter()
 
+# Longest wait for worker results; a caller's timeout_seconds can only shorten it
+RESULT_TIMEOUT_SECONDS = 10.0
+
 
 @router.post("/dns/orchestrate", response_model=DnsOrchestrateResponse)
 async def orchestrate_dns_lookup(request: DnsOrchestrateRequest):
@@ -27,17 +35,99 @@ async def orchestrate_dns_lookup(request: DnsOrchestrateRequest):
 
     This endpoint:
     1. Receives a DNS lookup request
-    2. Extracts trace_id from current span for correlation
+    2. Extracts trace_id from current span for trace correlation
     3. Creates a task and publishes to Redis Streams
-    4. Waits for worker results (correlated by trace_id)
+    4. Waits for worker results (correlated by task_id)
     5. Aggregates and returns results
     """
+    return await run_orchestration(request)
+
+
+@router.post("/dns/orchestrate/stream")
+async def orchestrate_dns_lookup_stream(request: DnsOrchestrateRequest):
+    """
+    Streaming variant of /dns/orchestrate
+
+    Responds with NDJSON: one {"event": "location"} line per worker result as
+    soon as it arrives, then a final {"event": "summary"} line carrying the
+    same aggregated response /dns/orchestrate would return.
+    """
+    queue: asyncio.Queue = asyncio.Queue()
+
+    async def on_result(result: Dict[str, Any]):
+        await queue.put({
+            "event": "location",
+            "location": result.get("location", "unknown"),
+            "result": location_entry(result)
+        })
+
+    async def run():
+        try:
+            response = await run_orchestration(request, on_result)
+            await queue.put({"event": "summary", "response": response.model_dump()})
+        except HTTPException as e:
+            await queue.put({"event": "error", "message": e.detail})
+        finally:
+            await queue.put(None)
+
+    # Runs in its own task (inheriting the request's trace context) so lines
+    # can be flushed while the orchestration is still waiting on workers
+    orchestration = asyncio.create_task(run())
+
+    async def lines():
+        try:
+            while (item := await queue.get()) is not None:
+                yield json.dumps(item) + "\n"
+        finally:
+            if not orchestration.done():
+                orchestration.cancel()
+
+    return StreamingResponse(lines(), media_type="application/x-ndjson")
+
+
+@router.post("/dns/orchestrate/batch", response_model=List[DnsOrchestrateResponse])
+async def orchestrate_dns_lookup_batch(requests: List[DnsBatchItem]):
+    """
+    Batched variant of /dns/orchestrate used by the gateway's micro-batcher
+
+    Runs every lookup concurrently and returns the responses in request order.
+    Each lookup is traced under its own caller's trace context when one is
+    given, so worker spans still join the trace of the request they serve.
+    A failing lookup yields an "error" response instead of failing the batch.
+    """
+    async def run_one(item: DnsBatchItem) -> DnsOrchestrateResponse:
+        token = context.attach(extract(item.trace_context)) if item.trace_context else None
+        try:
+            return await run_orchestration(item)
+        except HTTPException as e:
+            return DnsOrchestrateResponse(domain=item.domain, status="error", results=None, message=e.detail)
+        finally:
+            if token is not None:
+                context.detach(token)
+
+    with tracer.start_as_current_span("orchestrate_dns_lookup_batch") as span:
+        span.set_attribute("batch.size", len(requests))
+        return await asyncio.gather(*(run_one(item) for item in requests))
+
+
+async def run_orchestration(
+    request: DnsOrchestrateRequest,
+    on_result: Optional[Callable[[Dict[str, Any]], Awaitable[None]]] = None
+) -> DnsOrchestrateResponse:
+    """Publish the task, wait for worker results and aggregate them"""
     with tracer.start_as_current_span("orchestrate_dns_lookup") as span:
-        # Extract trace_id from current span - this is our correlation ID
+        # Extract trace_id from current span for trace correlation
         trace_id = format(span.get_span_context().trace_id, '032x')
 
+        # A single trace can carry many lookups (e.g. gateway batch requests),
+        # so results are matched on a per-task id rather than the trace_id
+        task_id = uuid.uuid4().hex
+        span.set_attribute("task.id", task_id)
+
         span.set_attribute("dns.domain", request.domain)
         span.set_attribute("locations.count", len(request.locations))
+        if request.timeout_seconds is not None:
+            span.set_attribute("request.timeout_seconds", request.timeout_seconds)
 
         logger.info(f"Orchestrating DNS lookup for domain: {request.domain}, "
                    f"locations: {request.locations}")
@@ -46,9 +136,10 @@ async def orchestrate_dns_lookup(request: DnsOrchestrateRequest):
             # Create ONE task that will be consumed by all worker locations (fan-out)
             task_message = DnsTaskMessage(
                 trace_id=trace_id,
-                task_id=trace_id,  # Use trace_id as task_id for simplicity
+                task_id=task_id,
                 domain=request.domain,
                 location="",  # No specific location - all workers process it
+                locations=request.locations,  # ...but only the requested locations answer
                 record_types=request.record_types,
                 timestamp=datetime.utcnow().isoformat()
             )
@@ -63,8 +154,11 @@ async def orchestrate_dns_lookup(request: DnsOrchestrateRequest):
 
             # Wait for results from ALL workers (each worker's consumer group gets the same message)
             results = await redis_service.wait_for_results(
-                trace_id=trace_id,
-                expected_count=len(request.locations)  # Expect one result per location
+                task_id=task_id,
+                expected_count=len(request.locations),  # Expect one result per location
+                timeout_seconds=min(request.timeout_seconds or RESULT_TIMEOUT_SECONDS, RESULT_TIMEOUT_SECONDS),
+                locations=request.locations,
+                on_result=on_result
             )
 
             # Aggregate results
@@ -118,12 +212,7 @@ def aggregate_results(results: list) -> Dict[str, Any]:
         location = result.get("location", "unknown")
         status = result.get("status", "unknown")
 
-        aggregated["by_location"][location] = {
-            "status": status,
-            "records": result.get("records", {}),
-            "error": result.get("error"),
-            "processing_time_ms": result.get("processing_time_ms", 0)
-        }
+        aggregated["by_location"][location] = location_entry(result)
 
         if status == "success":
             aggregated["summary"]["successful"] += 1
@@ -131,3 +220,13 @@ def aggregate_results(results: list) -> Dict[str, Any]:
             aggregated["summary"]["failed"] += 1
 
     return aggregated
+
+
+def location_entry(result: Dict[str, Any]) -> Dict[str, Any]:
+    """Per-location view of a single worker result"""
+    return {
+        "status": result.get("status", "unknown"),
+        "records": result.get("records", {}),
+        "error": result.get("error"),
+        "processing_time_ms": result.get("processing_time_ms", 0)
+    }
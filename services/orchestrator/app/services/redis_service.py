@@ -2,7 +2,7 @@ import os
 import json
 import logging
 import asyncio
-from typing import Optional, Dict, Any
+from typing import Optional, Dict, Any, Awaitable, Callable, List
 from datetime import datetime
 
 import redis.asyncio as redis
@@ -93,14 +93,23 @@ class RedisService:
                 span.set_status(Status(StatusCode.ERROR, "Error publishing DNS task"))
                 raise
 
-    async def wait_for_results(self, trace_id: str, expected_count: int, timeout_seconds: int = 10) -> list:
+    async def wait_for_results(
+        self,
+        task_id: str,
+        expected_count: int,
+        timeout_seconds: float = 10,
+        on_result: Optional[Callable[[Dict[str, Any]], Awaitable[None]]] = None,
+        locations: Optional[List[str]] = None
+    ) -> list:
         """
         Wait for worker results from Redis Stream
 
         Args:
-            trace_id: The OpenTelemetry trace ID to filter results
+            task_id: The task ID echoed back by workers, used to filter results
             expected_count: Number of results to wait for
             timeout_seconds: Maximum time to wait
+            on_result: Optional callback invoked with each result as it arrives
+            locations: Optional worker locations to accept results from (one each)
 
         Returns:
             List of result dictionaries
@@ -109,8 +118,8 @@ class RedisService:
             span.set_attribute("expected.count", expected_count)
 
             results = []
-            consumer_group = f"orchestrator-{trace_id}"
-            consumer_name = f"consumer-{trace_id}"
+            consumer_group = f"orchestrator-{task_id}"
+            consumer_name = f"consumer-{task_id}"
 
             try:
                 # Create consumer group (ignore error if exists)
@@ -131,17 +140,17 @@ class RedisService:
                 while len(results) < expected_count:
                     # Check timeout
                     elapsed = (datetime.now() - start_time).total_seconds()
-                    if elapsed > timeout_seconds:
+                    if elapsed >= timeout_seconds:
                         logger.warning(f"Timeout waiting for results. Got {len(results)}/{expected_count}")
                         break
 
-                    # Read from stream
+                    # Read from stream, blocking for up to 1 second but never past the timeout
                     messages = await self.redis_client.xreadgroup(
                         consumer_group,
                         consumer_name,
                         {self.dns_results_stream: last_id},
                         count=10,
-                        block=1000  # Block for 1 second
+                        block=max(1, min(1000, int((timeout_seconds - elapsed) * 1000)))
                     )
 
                     if messages:
@@ -152,10 +161,17 @@ class RedisService:
                                     result_json = message_data.get("data", "{}")
                                     result = json.loads(result_json)
 
-                                    # Filter by trace_id
-                                    if result.get("trace_id") == trace_id:
+                                    # Filter by task_id, and by location when the caller asked for specific ones
+                                    location = result.get("location")
+                                    if result.get("task_id") == task_id and (
+                                        locations is None
+                                        or (location in locations
+                                            and all(r.get("location") != location for r in results))
+                                    ):
                                         results.append(result)
                                         logger.info(f"Received result {len(results)}/{expected_count}")
+                                        if on_result is not None:
+                                            await on_result(result)
 
                                     # Acknowledge message
                                     await self.redis_client.xack(
@@ -166,12 +182,6 @@ class RedisService:
                                 except Exception as e:
                                     logger.error(f"Error processing message: {e}")
 
-                # Cleanup consumer group
-                try:
-                    await self.redis_client.xgroup_destroy(self.dns_results_stream, consumer_group)
-                except Exception:
-                    pass
-
                 span.set_attribute("results.count", len(results))
                 return results
 
@@ -181,6 +191,13 @@ class RedisService:
                 span.set_status(Status(StatusCode.ERROR, "Error waiting for results"))
                 return results
 
+            finally:
+                # Cleanup consumer group, also when the caller is cancelled (client gone)
+                try:
+                    await self.redis_client.xgroup_destroy(self.dns_results_stream, consumer_group)
+                except Exception:
+                    pass
+
 
 # Global instance
 redis_service = RedisService()
@@ -5,6 +5,7 @@ import (
 	"fmt"
 	"math/rand"
 	"os/exec"
+	"strconv"
 	"strings"
 	"sync"
 	"time"
@@ -33,6 +34,8 @@ type LookupResult struct {
 	RecordType string        `json:"record_type"`
 	Records    []string      `json:"records"`
 	Duration   time.Duration `json:"duration_ms"`
+	TTL        uint32        `json:"ttl,omitempty"`   // Smallest TTL (seconds) across the answer records
+	Rcode      string        `json:"rcode,omitempty"` // Response code reported by dig, e.g. NOERROR or NXDOMAIN
 	Error      string        `json:"error,omitempty"`
 }
 
@@ -191,8 +194,9 @@ func (r *Resolver) lookupRecord(domain, recordType string) LookupResult {
 		return result
 	}
 
-	// Execute dig command
-	cmd := exec.Command("dig", "+short", domain, recordType)
+	// Execute dig command (answer section only, so the TTL column is kept, plus
+	// the header comment carrying the response code)
+	cmd := exec.Command("dig", "+noall", "+answer", "+comments", domain, recordType)
 	output, err := cmd.CombinedOutput()
 
 	result.Duration = time.Since(start)
@@ -202,14 +206,67 @@ func (r *Resolver) lookupRecord(domain, recordType string) LookupResult {
 		return result
 	}
 
-	// Parse output
+	// Parse output - records carry the same rdata that "dig +short" would print
 	lines := strings.Split(strings.TrimSpace(string(output)), "\n")
 	for _, line := range lines {
-		line = strings.TrimSpace(line)
-		if line != "" {
-			result.Records = append(result.Records, line)
+		if rcode, ok := parseHeaderStatus(line); ok {
+			result.Rcode = rcode
+			continue
 		}
+		ttl, rdata, ok := parseAnswerLine(line)
+		if !ok {
+			continue
+		}
+		if len(result.Records) == 0 || ttl < result.TTL {
+			result.TTL = ttl
+		}
+		result.Records = append(result.Records, rdata)
+	}
+
+	// The name does not exist: count it as a failed lookup
+	if result.Rcode == "NXDOMAIN" {
+		result.Error = "NXDOMAIN"
 	}
 
 	return result
 }
+
+// parseHeaderStatus extracts the response code from dig's header comment
+// (";; ->>HEADER<<- opcode: QUERY, status: NXDOMAIN, id: 1234")
+func parseHeaderStatus(line string) (string, bool) {
+	if !strings.Contains(line, "->>HEADER<<-") {
+		return "", false
+	}
+	_, after, found := strings.Cut(line, "status: ")
+	if !found {
+		return "", false
+	}
+	status, _, _ := strings.Cut(after, ",")
+	return strings.TrimSpace(status), true
+}
+
+// parseAnswerLine splits a dig answer line ("<name> <ttl> <class> <type> <rdata>")
+// into its TTL and rdata, keeping the rdata verbatim (TXT records may contain spaces)
+func parseAnswerLine(line string) (uint32, string, bool) {
+	rest := strings.TrimSpace(line)
+	if rest == "" || strings.HasPrefix(rest, ";") {
+		return 0, "", false
+	}
+
+	var fields [4]string
+	for i := range fields {
+		end := strings.IndexAny(rest, " \t")
+		if end < 0 {
+			return 0, "", false
+		}
+		fields[i] = rest[:end]
+		rest = strings.TrimLeft(rest[end:], " \t")
+	}
+
+	ttl, err := strconv.ParseUint(fields[1], 10, 32)
+	if err != nil || rest == "" {
+		return 0, "", false
+	}
+
+	return uint32(ttl), rest, true
+}
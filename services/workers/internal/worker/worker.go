@@ -5,6 +5,7 @@ import (
 	"encoding/json"
 	"errors"
 	"log/slog"
+	"slices"
 	"strings"
 	"time"
 
@@ -133,6 +134,13 @@ func (w *Worker) processMessage(ctx context.Context, msg redis.StreamMessage) {
 		return
 	}
 
+	// Tasks may target a subset of locations (e.g. the gateway only needs the
+	// cells it has not cached); other workers skip them
+	if len(task.Locations) > 0 && !slices.Contains(task.Locations, w.cfg.Location) {
+		slog.Debug("Skipping task for other locations", "task_id", task.TaskID, "locations", task.Locations)
+		return
+	}
+
 	// Extract trace context from task metadata if present
 	carrier := propagation.MapCarrier{}
 	if task.TraceContext != nil {
@@ -226,7 +234,8 @@ type Task struct {
 	TraceID      string            `json:"trace_id"`        // OpenTelemetry trace ID for correlation
 	TaskID       string            `json:"task_id"`
 	Domain       string            `json:"domain"`
-	Location     string            `json:"location,omitempty"` // Not used - each worker uses its own configured location
+	Location     string            `json:"location,omitempty"`  // Not used - each worker uses its own configured location
+	Locations    []string          `json:"locations,omitempty"` // Locations that should answer; empty means all
 	RecordTypes  []string          `json:"record_types"`
 	Timestamp    string            `json:"timestamp"`
 	TraceContext map[string]string `json:"trace_context,omitempty"`